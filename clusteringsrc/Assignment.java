@@ -0,0 +1,12 @@
+/**
+ * Assignment: how every item is assigned to its nearest centroid. exact
+ * computes the distance to every centroid in every iteration. hamerly and
+ * elkan keep distance bounds per item and use the triangle inequality to
+ * skip most distance computations; they produce the same assignments.
+ * hamerly needs O(n) extra memory and is usually the fastest for 2D
+ * points; elkan needs O(n * k) and prunes more, which pays off for long
+ * DNA strands.
+ */
+public enum Assignment {
+	exact, hamerly, elkan
+}
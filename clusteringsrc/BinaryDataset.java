@@ -0,0 +1,366 @@
+/**
+ * BinaryDataset:
+ * Reads and writes the compact binary input format. Reading it needs no
+ * parsing at all, and because every record has the same size a process can
+ * compute the file offsets of its own partition arithmetically.
+ *
+ * Layout (all numbers little-endian):
+ *   header, HEADER_SIZE = 32 bytes
+ *     int  magic        0x4B4D4453 ("KMDS")
+ *     int  version      1
+ *     int  data type    DataType ordinal (0 = point, 1 = dna)
+ *     int  dimension    2 for points, strand length for DNA strands
+ *     long count        number of points / strands
+ *     long reserved     0
+ *   points: count x co-ordinates (doubles) followed by count y co-ordinates
+ *   DNA strands: count records of ceil(length / 4) bytes each. Base i of a
+ *     strand is stored as its DNABase ordinal in bits 2*(i%4) .. 2*(i%4)+1
+ *     of byte i/4 of the record.
+ *
+ * Besides reading whole partitions, an opened dataset reads single records
+ * at arbitrary positions, so that samples can be drawn without holding the
+ * input in memory.
+ */
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class BinaryDataset {
+
+	public static final int MAGIC = 0x4B4D4453;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+
+        /* number of bytes mapped / written at a time */
+	private static final int CHUNK_SIZE = 1 << 26;
+
+	private DataType dataType;
+	private int dimension;
+	private long count;
+        /* the open file of a dataset returned by open */
+	private RandomAccessFile file;
+
+	private BinaryDataset(DataType dataType, int dimension, long count) {
+		this.dataType = dataType;
+		this.dimension = dimension;
+		this.count = count;
+	}
+
+        /**
+         * isBinaryDataset:
+         * @param fileName
+         * @return true if the file starts with the binary dataset magic number
+         * @throws IOException
+         */
+	public static boolean isBinaryDataset(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			if(file.length() < HEADER_SIZE) {
+				return false;
+			}
+			ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			file.getChannel().read(header, 0);
+			return header.getInt(0) == MAGIC;
+		} finally {
+			file.close();
+		}
+	}
+
+        /**
+         * readHeader:
+         * read and validate the header of a binary dataset
+         * @throws IOException
+         */
+	private static BinaryDataset readHeader(FileChannel channel, DataType expectedType) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		channel.read(header, 0);
+		if(header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			throw new IOException("Not a binary dataset of version " + VERSION);
+		}
+		DataType dataType = DataType.values()[header.getInt(8)];
+		if(dataType != expectedType) {
+			throw new IOException("Binary dataset holds " + dataType + " data, expected " + expectedType);
+		}
+		return new BinaryDataset(dataType, header.getInt(12), header.getLong(16));
+	}
+
+	private static ByteBuffer makeHeader(DataType dataType, int dimension, long count) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(dataType.ordinal()).putInt(dimension).putLong(count).putLong(0);
+		header.flip();
+		return header;
+	}
+
+        /**
+         * open:
+         * open a binary dataset for reading records at arbitrary positions
+         * @param fileName
+         * @param expectedType
+         * @return
+         * @throws IOException
+         */
+	public static BinaryDataset open(String fileName, DataType expectedType) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			BinaryDataset dataset = readHeader(file.getChannel(), expectedType);
+			dataset.file = file;
+			return dataset;
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	public void close() throws IOException {
+		file.close();
+	}
+
+        /* number of points / strands */
+	public long getCount() {
+		return count;
+	}
+
+        /* 2 for points, strand length for DNA strands */
+	public int getDimension() {
+		return dimension;
+	}
+
+        /**
+         * readPoints:
+         * read the 2D points at the given positions of an opened dataset
+         * @param indices: positions of the points, in the order they are returned
+         * @return
+         * @throws IOException
+         */
+	public PointSet readPoints(long[] indices) throws IOException {
+		FileChannel channel = file.getChannel();
+		ByteBuffer value = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		PointSet points = new PointSet(indices.length);
+		for(long index : indices) {
+			value.clear();
+			readFully(channel, value, HEADER_SIZE + 8 * index);
+			double x = value.getDouble(0);
+			value.clear();
+			readFully(channel, value, HEADER_SIZE + 8 * (count + index));
+			points.add(x, value.getDouble(0));
+		}
+		return points;
+	}
+
+        /**
+         * readDNAStrands:
+         * read the DNA strands at the given positions of an opened dataset
+         * @param indices: positions of the strands, in the order they are returned
+         * @return
+         * @throws IOException
+         */
+	public List<DNAStrand> readDNAStrands(long[] indices) throws IOException {
+		FileChannel channel = file.getChannel();
+		int recordSize = recordSize(dimension);
+		ByteBuffer record = ByteBuffer.allocate(recordSize);
+		long[] words = new long[DNAStrand.wordsPerStrand(dimension)];
+		List<DNAStrand> strands = new ArrayList<DNAStrand>(indices.length);
+		for(long index : indices) {
+			record.clear();
+			readFully(channel, record, HEADER_SIZE + index * recordSize);
+			Arrays.fill(words, 0);
+			for(int b = 0; b < recordSize; b++) {
+				words[b >> 3] |= (record.get(b) & 0xFFL) << ((b & 7) << 3);
+			}
+			strands.add(new DNAStrand(words, 0, dimension));
+		}
+		return strands;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of the binary dataset");
+			}
+		}
+	}
+
+        /* index of the first record of a partition */
+	private static long partitionStart(long count, int partIndex, int numberOfParts) {
+		return (count * partIndex) / numberOfParts;
+	}
+
+        /**
+         * readPoints:
+         * read the 2D points of one partition of a binary dataset. Partition i of n holds
+         * the points [count * i / n, count * (i + 1) / n).
+         * @param fileName
+         * @param partIndex
+         * @param numberOfParts
+         * @return
+         * @throws IOException
+         */
+	public static PointSet readPoints(String fileName, int partIndex, int numberOfParts) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			BinaryDataset dataset = readHeader(channel, DataType.point);
+			long first = partitionStart(dataset.count, partIndex, numberOfParts);
+			int size = (int) (partitionStart(dataset.count, partIndex + 1, numberOfParts) - first);
+
+			double[] xs = new double[size];
+			double[] ys = new double[size];
+			readDoubles(channel, HEADER_SIZE + 8 * first, xs, size);
+			readDoubles(channel, HEADER_SIZE + 8 * (dataset.count + first), ys, size);
+			return new PointSet(xs, ys, size);
+		} finally {
+			file.close();
+		}
+	}
+
+        /* map the file chunk by chunk and copy size doubles starting at offset into values */
+	private static void readDoubles(FileChannel channel, long offset, double[] values, int size) throws IOException {
+		int done = 0;
+		while(done < size) {
+			int n = Math.min(size - done, CHUNK_SIZE / 8);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset + 8L * done, 8L * n);
+			buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, done, n);
+			done += n;
+		}
+	}
+
+        /**
+         * readDNAStrands:
+         * read the DNA strands of one partition of a binary dataset. Partition i of n holds
+         * the strands [count * i / n, count * (i + 1) / n).
+         * @param fileName
+         * @param partIndex
+         * @param numberOfParts
+         * @return
+         * @throws IOException
+         */
+	public static List<DNAStrand> readDNAStrands(String fileName, int partIndex, int numberOfParts) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			BinaryDataset dataset = readHeader(channel, DataType.dna);
+			int strandLength = dataset.dimension;
+			int recordSize = recordSize(strandLength);
+			long first = partitionStart(dataset.count, partIndex, numberOfParts);
+			long last = partitionStart(dataset.count, partIndex + 1, numberOfParts);
+
+			List<DNAStrand> strands = new ArrayList<DNAStrand>((int) (last - first));
+			byte[] record = new byte[recordSize];
+			long[] words = new long[DNAStrand.wordsPerStrand(strandLength)];
+			int recordsPerChunk = Math.max(1, CHUNK_SIZE / recordSize);
+			long s = first;
+			while(s < last) {
+				int n = (int) Math.min(last - s, recordsPerChunk);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + s * recordSize, (long) n * recordSize);
+				for(int r = 0; r < n; r++) {
+					buffer.get(record);
+                                        /* a record is the little-endian byte image of the packed strand words */
+					Arrays.fill(words, 0);
+					for(int b = 0; b < recordSize; b++) {
+						words[b >> 3] |= (record[b] & 0xFFL) << ((b & 7) << 3);
+					}
+					strands.add(new DNAStrand(words, 0, strandLength));
+				}
+				s += n;
+			}
+			return strands;
+		} finally {
+			file.close();
+		}
+	}
+
+        /* number of bytes of a packed strand record */
+	private static int recordSize(int strandLength) {
+		return (strandLength + 3) / 4;
+	}
+
+        /**
+         * writePoints:
+         * write a set of 2D points as a binary dataset
+         * @param fileName
+         * @param points
+         * @throws IOException
+         */
+	public static void writePoints(String fileName, PointSet points) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		try {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			channel.write(makeHeader(DataType.point, 2, points.size()));
+			writeDoubles(channel, points.getXs(), points.size());
+			writeDoubles(channel, points.getYs(), points.size());
+		} finally {
+			file.close();
+		}
+	}
+
+	private static void writeDoubles(FileChannel channel, double[] values, int size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		int done = 0;
+		while(done < size) {
+			int n = Math.min(size - done, CHUNK_SIZE / 8);
+			buffer.clear();
+			buffer.asDoubleBuffer().put(values, done, n);
+			buffer.limit(8 * n);
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			done += n;
+		}
+	}
+
+        /**
+         * writeDNAStrands:
+         * write a list of DNA strands, all of the same length, as a binary dataset
+         * @param fileName
+         * @param strands
+         * @throws IOException
+         */
+	public static void writeDNAStrands(String fileName, List<DNAStrand> strands) throws IOException {
+		int strandLength = strands.isEmpty() ? 0 : strands.get(0).length();
+		int recordSize = recordSize(strandLength);
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		try {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			channel.write(makeHeader(DataType.dna, strandLength, strands.size()));
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, recordSize));
+			long[] words = new long[DNAStrand.wordsPerStrand(strandLength)];
+			byte[] record = new byte[recordSize];
+			for(DNAStrand dna : strands) {
+				if(dna.length() != strandLength) {
+					throw new IOException("All DNA strands must have the same length");
+				}
+				dna.copyWordsTo(words, 0);
+				for(int b = 0; b < recordSize; b++) {
+					record[b] = (byte) (words[b >> 3] >>> ((b & 7) << 3));
+				}
+				if(buffer.remaining() < recordSize) {
+					flush(channel, buffer);
+				}
+				buffer.put(record);
+			}
+			flush(channel, buffer);
+		} finally {
+			file.close();
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+ * BoundedDNAAssigner:
+ * Base class of the DNA assigners that keep, for every strand, an upper bound
+ * on the distance to its assigned centroid and lower bounds on the distances
+ * to the other centroids. Hamming distance is a metric, so when a centroid
+ * changes in d positions every distance to it changes by at most d and the
+ * bounds are loosened by d instead of being recomputed. A strand whose upper
+ * bound stays below its lower bounds keeps its centroid without a single
+ * comparison. Distances are integers, so the bounds are exact.
+ */
+import java.util.List;
+
+
+public abstract class BoundedDNAAssigner extends DNAAssigner {
+
+        /* index of the centroid every strand is assigned to */
+	protected int[] nearest;
+        /* upper bound on the distance from every strand to its assigned centroid */
+	protected int[] upper;
+        /* centroids of the previous call */
+	private List<DNAStrand> previousCentroids;
+
+	protected BoundedDNAAssigner(List<DNAStrand> strands) {
+		super(strands);
+	}
+
+	@Override
+	public int assign(List<DNAStrand> centroids, int[] assignments) {
+
+		if(previousCentroids == null || previousCentroids.size() != centroids.size()) {
+			initialize(centroids);
+		} else {
+			int[] drift = new int[centroids.size()];
+			for(int c = 0; c < drift.length; c++) {
+				drift[c] = previousCentroids.get(c).distance(centroids.get(c));
+			}
+			update(centroids, drift);
+		}
+
+		previousCentroids = centroids;
+		int changes = 0;
+		for(int s = 0; s < strands.size(); s++) {
+			if(assignments[s] != nearest[s]) {
+				assignments[s] = nearest[s];
+				changes++;
+			}
+		}
+		return changes;
+	}
+
+        /**
+         * initialize:
+         * assign every strand by comparing it with all the centroids and set up the bounds
+         * @param centroids
+         */
+	protected abstract void initialize(List<DNAStrand> centroids);
+
+        /**
+         * update:
+         * assign every strand after the centroids have changed
+         * @param centroids
+         * @param drift: distance of every centroid from its previous version
+         */
+	protected abstract void update(List<DNAStrand> centroids, int[] drift);
+
+        /* centroidDistances[c1 * k + c2]: distance between centroids c1 and c2 */
+	protected static int[] centroidDistances(List<DNAStrand> centroids) {
+		int k = centroids.size();
+		int[] distances = new int[k * k];
+		for(int c1 = 0; c1 < k; c1++) {
+			for(int c2 = c1 + 1; c2 < k; c2++) {
+				int distance = centroids.get(c1).distance(centroids.get(c2));
+				distances[c1 * k + c2] = distance;
+				distances[c2 * k + c1] = distance;
+			}
+		}
+		return distances;
+	}
+
+}
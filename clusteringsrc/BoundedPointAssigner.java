@@ -0,0 +1,93 @@
+/**
+ * BoundedPointAssigner:
+ * Base class of the assigners that keep, for every point, an upper bound on
+ * the distance to its assigned centroid and lower bounds on the distances to
+ * the other centroids. When the centroids move, the triangle inequality says
+ * that each of these distances changes by at most the drift of the centroid,
+ * so the bounds are loosened by the drift instead of being recomputed. A point
+ * whose upper bound stays below its lower bounds keeps its centroid without
+ * computing a single distance.
+ * The bounds are loosened by an extra ROUNDING fraction so that rounding
+ * errors in the computed distances can never make them wrong: a point is only
+ * skipped when the exact algorithm would assign it to the same centroid.
+ */
+import java.util.List;
+
+
+public abstract class BoundedPointAssigner extends PointAssigner {
+
+	protected static final double ROUNDING = 1e-10;
+
+        /* index of the centroid every point is assigned to */
+	protected int[] nearest;
+        /* upper bound on the distance from every point to its assigned centroid */
+	protected double[] upper;
+        /* centroid co-ordinates of the previous call */
+	private double[] previousX;
+	private double[] previousY;
+
+	protected BoundedPointAssigner(PointSet points, int from, int to) {
+		super(points, from, to);
+	}
+
+	@Override
+	public void assign(List<Point> centroids, int[] assignments) {
+		double[] cx = xs(centroids);
+		double[] cy = ys(centroids);
+
+		if(previousX == null || previousX.length != cx.length) {
+			initialize(cx, cy);
+		} else {
+			double[] drift = new double[cx.length];
+			for(int c = 0; c < cx.length; c++) {
+				drift[c] = distance(previousX[c], previousY[c], cx[c], cy[c]);
+			}
+			update(cx, cy, drift);
+		}
+
+		previousX = cx;
+		previousY = cy;
+		System.arraycopy(nearest, 0, assignments, 0, size);
+	}
+
+        /**
+         * initialize:
+         * assign every point by computing all its distances and set up the bounds
+         * @param cx
+         * @param cy
+         */
+	protected abstract void initialize(double[] cx, double[] cy);
+
+        /**
+         * update:
+         * assign every point after the centroids have moved
+         * @param cx
+         * @param cy
+         * @param drift: distance every centroid moved since the previous call
+         */
+	protected abstract void update(double[] cx, double[] cy, double[] drift);
+
+	protected static double loosenUpper(double bound, double drift) {
+		if(drift == 0) {
+			return bound;
+		}
+		return (bound + drift) * (1 + ROUNDING);
+	}
+
+	protected static double loosenLower(double bound, double drift) {
+		if(drift == 0) {
+			return bound;
+		}
+		return bound - drift - ROUNDING * (bound + drift);
+	}
+
+        /**
+         * halfCentroidDistance:
+         * half the distance between two centroids, rounded down. A point closer than
+         * this to one of the centroids is certainly closer to it than to the other one.
+         */
+	protected static double halfCentroidDistance(double[] cx, double[] cy, int c1, int c2) {
+		return 0.5 * distance(cx[c1], cy[c1], cx[c2], cy[c2]) * (1 - ROUNDING);
+	}
+
+}
@@ -0,0 +1,185 @@
+/**
+ * ChunkSchedule:
+ * Keeps track of which chunks of the input every participant of the parallel
+ * mode holds (Process-0 only). The input is cut into chunksPerParticipant
+ * chunks per participant, chunk c being part c of the input as read by
+ * InputPartitionReader, and participant i starts with the chunks
+ * [(i-1) * chunksPerParticipant, i * chunksPerParticipant).
+ *
+ * Process-0 measures how long every participant takes to answer in every
+ * iteration, and keeps a smoothed throughput (chunks per second) of every
+ * participant. When giving every participant a share of the chunks in
+ * proportion to its throughput would shorten the iteration noticeably, the
+ * surplus chunks of the slow participants move to the fast ones. Chunks are
+ * assumed to be about the same size, which the equal byte ranges (or equal
+ * counts of a binary dataset) of InputPartitionReader make them.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class ChunkSchedule {
+
+        /* chunks only move when that shortens the predicted iteration by at least this fraction */
+	private static final double MINIMUM_GAIN = 0.1;
+
+	private int numberOfParticipants;
+	private int numberOfChunks;
+        /* chunks.get(i - 1) = the chunks participant i holds, in the order it holds them */
+	private List<List<Integer>> chunks;
+        /* smoothed throughput of every participant in chunks per second, 0 until measured */
+	private double[] rates;
+	private long startTime;
+	private long[] elapsed;
+        /* participants whose chunks changed since they last answered */
+	private boolean[] changed;
+
+        /**
+         * Constructor
+         * @param numberOfParticipants
+         * @param chunksPerParticipant
+         */
+	public ChunkSchedule(int numberOfParticipants, int chunksPerParticipant) {
+		this.numberOfParticipants = numberOfParticipants;
+		numberOfChunks = numberOfParticipants * chunksPerParticipant;
+		chunks = new ArrayList<List<Integer>>();
+		for(int i = 0; i < numberOfParticipants; i++) {
+			List<Integer> owned = new ArrayList<Integer>();
+			for(int c = i * chunksPerParticipant; c < (i + 1) * chunksPerParticipant; c++) {
+				owned.add(c);
+			}
+			chunks.add(owned);
+		}
+		rates = new double[numberOfParticipants];
+		elapsed = new long[numberOfParticipants];
+		changed = new boolean[numberOfParticipants];
+	}
+
+        /**
+         * initialChunks:
+         * participant side of the constructor
+         * @param participant: rank of the participant, 1 based
+         * @param chunksPerParticipant
+         * @return the chunks the participant starts with
+         */
+	public static int[] initialChunks(int participant, int chunksPerParticipant) {
+		int[] owned = new int[chunksPerParticipant];
+		for(int c = 0; c < chunksPerParticipant; c++) {
+			owned[c] = (participant - 1) * chunksPerParticipant + c;
+		}
+		return owned;
+	}
+
+        /* the chunks participant (1 based) holds */
+	public int[] getChunks(int participant) {
+		List<Integer> owned = chunks.get(participant - 1);
+		int[] result = new int[owned.size()];
+		for(int c = 0; c < result.length; c++) {
+			result[c] = owned.get(c);
+		}
+		return result;
+	}
+
+        /* true if the chunks of participant changed in the last rebalance */
+	public boolean hasChanged(int participant) {
+		return changed[participant - 1];
+	}
+
+        /* start timing the participants, when their work is sent */
+	public void startIteration() {
+		startTime = System.nanoTime();
+	}
+
+        /* participant has answered */
+	public void finished(int participant) {
+		elapsed[participant - 1] = System.nanoTime() - startTime;
+	}
+
+        /**
+         * rebalance:
+         * Update the throughput of every participant from the iteration that just ended and
+         * move chunks if that pays off. A participant whose chunks just changed also spent
+         * time reading its new chunks, so that iteration does not count for it.
+         * @return true if any participant holds different chunks now
+         */
+	public boolean rebalance() {
+		for(int i = 0; i < numberOfParticipants; i++) {
+			if(!changed[i] && elapsed[i] > 0) {
+				double rate = chunks.get(i).size() / (elapsed[i] / 1000000000.0);
+                                /* smooth out noise from other jobs on the node */
+				rates[i] = (rates[i] == 0) ? rate : (rates[i] + rate) / 2;
+			}
+		}
+		Arrays.fill(changed, false);
+
+		double totalRate = 0;
+		for(int i = 0; i < numberOfParticipants; i++) {
+			if(rates[i] == 0) {
+				return false;
+			}
+			totalRate += rates[i];
+		}
+
+		int[] targets = targetCounts(totalRate);
+		double currentTime = 0;
+		double targetTime = 0;
+		for(int i = 0; i < numberOfParticipants; i++) {
+			currentTime = Math.max(currentTime, chunks.get(i).size() / rates[i]);
+			targetTime = Math.max(targetTime, targets[i] / rates[i]);
+		}
+		if(targetTime > currentTime * (1 - MINIMUM_GAIN)) {
+			return false;
+		}
+
+                /* the surplus chunks of every participant, taken from the end of its list */
+		List<Integer> surplus = new ArrayList<Integer>();
+		for(int i = 0; i < numberOfParticipants; i++) {
+			List<Integer> owned = chunks.get(i);
+			while(owned.size() > targets[i]) {
+				surplus.add(owned.remove(owned.size() - 1));
+				changed[i] = true;
+			}
+		}
+		for(int i = 0; i < numberOfParticipants; i++) {
+			List<Integer> owned = chunks.get(i);
+			while(owned.size() < targets[i]) {
+				owned.add(surplus.remove(surplus.size() - 1));
+				changed[i] = true;
+			}
+		}
+		return true;
+	}
+
+        /**
+         * targetCounts:
+         * share the chunks in proportion to the throughputs, every participant keeping at
+         * least one chunk so that it is still measured. The rounding goes by largest remainder.
+         * @param totalRate
+         * @return the number of chunks every participant should hold
+         */
+	private int[] targetCounts(double totalRate) {
+		int[] targets = new int[numberOfParticipants];
+		double[] remainders = new double[numberOfParticipants];
+		int spare = numberOfChunks - numberOfParticipants;
+		int assigned = 0;
+		for(int i = 0; i < numberOfParticipants; i++) {
+			double share = spare * rates[i] / totalRate;
+			targets[i] = 1 + (int) share;
+			remainders[i] = share - (int) share;
+			assigned += (int) share;
+		}
+		for(; assigned < spare; assigned++) {
+			int largest = 0;
+			for(int i = 1; i < numberOfParticipants; i++) {
+				if(remainders[i] > remainders[largest]) {
+					largest = i;
+				}
+			}
+			targets[largest]++;
+			remainders[largest] = -1;
+		}
+		return targets;
+	}
+
+}
@@ -0,0 +1,341 @@
+/**
+ * ClusteringOptions:
+ * Optional settings of a clustering run. They are given on the command line
+ * as --name=value after the positional arguments (see Driver).
+ */
+public class ClusteringOptions {
+
+        /* how points are assigned to their nearest centroid */
+	private Assignment assignment = Assignment.exact;
+        /* how the initial centroids are chosen */
+	private Seeding seeding = Seeding.kmeansplusplus;
+        /* upper limit on the number of iterations */
+	private int maxIterations = 100;
+        /*
+        DNA clustering stops once at most this fraction of the strands changed cluster
+        in an iteration (not in the minibatch mode, see patience)
+         */
+	private double changeThreshold = 0;
+        /*
+        2D clustering stops once the centroids moved at most this far in total in an
+        iteration (not in the minibatch mode, see patience)
+         */
+	private double epsilon = 0;
+        /* number of points / strands in every batch of the minibatch mode */
+	private int batchSize = 1024;
+        /*
+        DNA minibatch multiplies the base counts by this factor before every batch, so that
+        the strands of older batches weigh less
+         */
+	private double decay = 1;
+        /*
+        the minibatch mode stops once this many batches in a row were no nearer to their
+        centroids than the nearest batch so far (see isMiniBatchConverged)
+         */
+	private int patience = 10;
+        /* number of threads every process computes with */
+	private int threads = Runtime.getRuntime().availableProcessors();
+        /* how the input is shared among the participants of the parallel mode */
+	private Scheduling scheduling = Scheduling.fixed;
+        /* number of chunks of the input per participant with dynamic scheduling */
+	private int chunksPerProcess = 8;
+        /* how the participants of the parallel mode get their results to Process-0 */
+	private Reduction reduction = Reduction.direct;
+        /* how the processes of the parallel and collective modes exchange messages */
+	private Transport transport = Transport.mpi;
+        /* number of ranks the loopback transport runs as threads */
+	private int processes = 4;
+        /* host list of the socket transport, one rank per line */
+	private String hosts = "machines.txt";
+        /* rank of this process with the socket transport, its line in the host list */
+	private int rank = -1;
+        /* port rank 0 of the socket transport listens on, rank r listens on port + r */
+	private int port = 7000;
+
+        /**
+         * parseOption:
+         * set the option given as --name=value
+         * @param option
+         */
+	public void parseOption(String option) {
+		int separator = option.indexOf('=');
+		if(!option.startsWith("--") || separator < 0) {
+			throw new IllegalArgumentException("Options look like --name=value: " + option);
+		}
+		String name = option.substring(2, separator);
+		String value = option.substring(separator + 1);
+
+		if(name.equals("assignment")) {
+			assignment = Assignment.valueOf(value);
+		} else if(name.equals("seeding")) {
+			seeding = Seeding.valueOf(value);
+		} else if(name.equals("maxIterations")) {
+			maxIterations = Integer.parseInt(value);
+			if(maxIterations < 1) {
+				throw new IllegalArgumentException("At least one iteration is needed: " + option);
+			}
+		} else if(name.equals("changeThreshold")) {
+			changeThreshold = Double.parseDouble(value);
+			if(changeThreshold < 0 || changeThreshold >= 1) {
+				throw new IllegalArgumentException("The change threshold is a fraction in [0, 1): " + option);
+			}
+		} else if(name.equals("epsilon")) {
+			epsilon = Double.parseDouble(value);
+			if(!(epsilon >= 0)) {
+				throw new IllegalArgumentException("The epsilon can not be negative: " + option);
+			}
+		} else if(name.equals("batchSize")) {
+			batchSize = Integer.parseInt(value);
+			if(batchSize < 1) {
+				throw new IllegalArgumentException("A batch needs at least one item: " + option);
+			}
+		} else if(name.equals("decay")) {
+			decay = Double.parseDouble(value);
+			if(!(decay > 0 && decay <= 1)) {
+				throw new IllegalArgumentException("The decay is a factor in (0, 1]: " + option);
+			}
+		} else if(name.equals("patience")) {
+			patience = Integer.parseInt(value);
+			if(patience < 1) {
+				throw new IllegalArgumentException("The patience is at least one batch: " + option);
+			}
+		} else if(name.equals("threads")) {
+			threads = Integer.parseInt(value);
+			if(threads < 1) {
+				throw new IllegalArgumentException("At least one thread is needed: " + option);
+			}
+		} else if(name.equals("scheduling")) {
+			scheduling = Scheduling.valueOf(value);
+		} else if(name.equals("reduction")) {
+			reduction = Reduction.valueOf(value);
+		} else if(name.equals("transport")) {
+			transport = Transport.valueOf(value);
+		} else if(name.equals("processes")) {
+			processes = Integer.parseInt(value);
+			if(processes < 1) {
+				throw new IllegalArgumentException("At least one process is needed: " + option);
+			}
+		} else if(name.equals("hosts")) {
+			hosts = value;
+		} else if(name.equals("rank")) {
+			rank = Integer.parseInt(value);
+			if(rank < 0) {
+				throw new IllegalArgumentException("Ranks start at 0: " + option);
+			}
+		} else if(name.equals("port")) {
+			port = Integer.parseInt(value);
+			if(port < 1 || port > 65535) {
+				throw new IllegalArgumentException("Not a TCP port: " + option);
+			}
+		} else if(name.equals("chunksPerProcess")) {
+			chunksPerProcess = Integer.parseInt(value);
+			if(chunksPerProcess < 1) {
+				throw new IllegalArgumentException("Every process needs at least one chunk: " + option);
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown option " + name);
+		}
+	}
+
+        /**
+         * validate:
+         * check the options that only make sense together, once all of them are set
+         */
+	public void validate() {
+		if(scheduling == Scheduling.dynamic && reduction == Reduction.tree) {
+			throw new IllegalArgumentException("Dynamic scheduling times the answer of every participant, "
+					+ "it needs --reduction=direct");
+		}
+		if(transport == Transport.socket && rank < 0) {
+			throw new IllegalArgumentException("The socket transport needs the rank of this process: --rank=N");
+		}
+	}
+
+	public Assignment getAssignment() {
+		return assignment;
+	}
+
+	public void setAssignment(Assignment assignment) {
+		this.assignment = assignment;
+	}
+
+	public Seeding getSeeding() {
+		return seeding;
+	}
+
+	public void setSeeding(Seeding seeding) {
+		this.seeding = seeding;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	public double getChangeThreshold() {
+		return changeThreshold;
+	}
+
+	public void setChangeThreshold(double changeThreshold) {
+		this.changeThreshold = changeThreshold;
+	}
+
+        /**
+         * isConverged:
+         * @param changes: number of strands that changed cluster in the last iteration
+         * @param numberOfStrands
+         * @return true if DNA clustering can stop
+         */
+	public boolean isConverged(long changes, long numberOfStrands) {
+		return changes <= changeThreshold * numberOfStrands;
+	}
+
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+        /**
+         * isConverged:
+         * @param centroidShift: total distance the centroids moved in the last iteration
+         * @return true if 2D clustering can stop
+         */
+	public boolean isConverged(double centroidShift) {
+		return centroidShift <= epsilon;
+	}
+
+        /**
+         * reportIteration:
+         * print how far the centroids moved in an iteration of 2D clustering
+         * @param iteration
+         * @param centroidShift
+         */
+	public static void reportIteration(int iteration, double centroidShift) {
+		System.out.println("Iteration " + iteration + ": total centroid shift " + centroidShift);
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public double getDecay() {
+		return decay;
+	}
+
+	public void setDecay(double decay) {
+		this.decay = decay;
+	}
+
+	public int getPatience() {
+		return patience;
+	}
+
+	public void setPatience(int patience) {
+		this.patience = patience;
+	}
+
+        /**
+         * isMiniBatchConverged:
+         * The cost of a batch is the mean distance of its items from their nearest centroid,
+         * measured before the batch moves the centroids, so on data the centroids were not fitted
+         * to. Both minibatch modes stop once the cost stopped going down.
+         * @param quietBatches: number of batches in a row whose cost was not below the lowest
+         * cost of the batches before them
+         * @return true if minibatch clustering can stop
+         */
+	public boolean isMiniBatchConverged(int quietBatches) {
+		return quietBatches >= patience;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public Scheduling getScheduling() {
+		return scheduling;
+	}
+
+	public void setScheduling(Scheduling scheduling) {
+		this.scheduling = scheduling;
+	}
+
+	public int getChunksPerProcess() {
+		return chunksPerProcess;
+	}
+
+	public void setChunksPerProcess(int chunksPerProcess) {
+		this.chunksPerProcess = chunksPerProcess;
+	}
+
+	public Reduction getReduction() {
+		return reduction;
+	}
+
+	public void setReduction(Reduction reduction) {
+		this.reduction = reduction;
+	}
+
+	public Transport getTransport() {
+		return transport;
+	}
+
+	public void setTransport(Transport transport) {
+		this.transport = transport;
+	}
+
+	public int getProcesses() {
+		return processes;
+	}
+
+	public void setProcesses(int processes) {
+		this.processes = processes;
+	}
+
+	public String getHosts() {
+		return hosts;
+	}
+
+	public void setHosts(String hosts) {
+		this.hosts = hosts;
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public void setRank(int rank) {
+		this.rank = rank;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+        /**
+         * getChunksPerParticipant:
+         * @return the number of chunks the input is cut into per participant of the parallel
+         * mode, a single one unless the scheduling is dynamic
+         */
+	public int getChunksPerParticipant() {
+		return scheduling == Scheduling.dynamic ? chunksPerProcess : 1;
+	}
+
+}
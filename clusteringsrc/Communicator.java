@@ -0,0 +1,121 @@
+/**
+ * Communicator:
+ * The messages the distributed clustering modes exchange, as a group of
+ * numbered processes (ranks 0 .. size-1). The engines program against this
+ * interface only; MPICommunicator runs them under mpirun with mpiJava, and
+ * LoopbackCommunicator runs every rank as a thread of a single JVM.
+ *
+ * Buffers are int[], long[], double[] or byte[] arrays, and offsets and
+ * counts are in elements. A message has to be received into an array of the
+ * type it was sent from. Messages from one rank to another with matching
+ * tags are received in the order they were sent, as with MPI.
+ */
+import java.io.IOException;
+
+
+public interface Communicator {
+
+        /* matches a message with any tag */
+	int ANY_TAG = -1;
+        /* matches a message from any rank */
+	int ANY_SOURCE = -1;
+
+	int getRank();
+
+	int getSize();
+
+        /**
+         * send:
+         * send count elements of buffer, starting at offset, to destination. The buffer may be
+         * reused as soon as send returns.
+         * @throws IOException
+         */
+	void send(Object buffer, int offset, int count, int destination, int tag) throws IOException;
+
+        /**
+         * recv:
+         * wait for a message from source with tag and copy it into buffer, starting at offset
+         * @param count: the most elements that fit, a longer message is an error
+         * @return the source, tag and number of elements of the message
+         * @throws IOException
+         */
+	MessageStatus recv(Object buffer, int offset, int count, int source, int tag) throws IOException;
+
+        /**
+         * probe:
+         * wait for a message from source with tag without receiving it
+         * @return the source and tag of the message
+         * @throws IOException
+         */
+	MessageStatus probe(int source, int tag) throws IOException;
+
+        /**
+         * isend:
+         * start sending. The buffer may only be reused once the request completed.
+         * @throws IOException
+         */
+	MessageRequest isend(Object buffer, int offset, int count, int destination, int tag) throws IOException;
+
+        /**
+         * irecv:
+         * start receiving. The buffer holds the message once the request completed.
+         * @throws IOException
+         */
+	MessageRequest irecv(Object buffer, int offset, int count, int source, int tag) throws IOException;
+
+        /**
+         * waitAny:
+         * wait for one of the requests to complete. A completed request is not returned again.
+         * @param requests: requests of this communicator
+         * @return the status of the completed request, its position in requests as the index
+         * @throws IOException
+         */
+	MessageStatus waitAny(MessageRequest[] requests) throws IOException;
+
+        /**
+         * waitAll:
+         * wait for all the requests to complete
+         * @param requests: requests of this communicator
+         * @throws IOException
+         */
+	void waitAll(MessageRequest[] requests) throws IOException;
+
+        /**
+         * bcast:
+         * every rank ends up with the count elements of buffer of root
+         * @throws IOException
+         */
+	void bcast(Object buffer, int offset, int count, int root) throws IOException;
+
+        /**
+         * allreduceSum:
+         * every rank receives the element-wise sum of the count elements of sendBuffer of
+         * all the ranks in receiveBuffer
+         * @throws IOException
+         */
+	void allreduceSum(Object sendBuffer, Object receiveBuffer, int count) throws IOException;
+
+        /**
+         * allreduceMax:
+         * every rank receives the element-wise maximum of the count elements of sendBuffer
+         * of all the ranks in receiveBuffer
+         * @throws IOException
+         */
+	void allreduceMax(Object sendBuffer, Object receiveBuffer, int count) throws IOException;
+
+        /**
+         * allgather:
+         * every rank receives the count elements of sendBuffer of rank i at i * count in
+         * receiveBuffer
+         * @throws IOException
+         */
+	void allgather(Object sendBuffer, int count, Object receiveBuffer) throws IOException;
+
+        /**
+         * close:
+         * leave the group, after the last message of this rank
+         * @throws IOException
+         */
+	void close() throws IOException;
+
+}
@@ -0,0 +1,45 @@
+/**
+ * DNAAssigner:
+ * Assigns every DNA strand of a list to the index of its nearest centroid.
+ * One assigner is used for the whole run, so that implementations can carry
+ * state such as distance bounds from one iteration to the next. Whatever
+ * the implementation, ties go to the centroid with the lowest index, so all
+ * of them produce exactly the same assignments.
+ */
+import java.util.List;
+
+
+public abstract class DNAAssigner {
+
+	protected List<DNAStrand> strands;
+
+	protected DNAAssigner(List<DNAStrand> strands) {
+		this.strands = strands;
+	}
+
+        /**
+         * create:
+         * @param assignment
+         * @param strands
+         * @return an assigner of the requested kind for strands
+         */
+	public static DNAAssigner create(Assignment assignment, List<DNAStrand> strands) {
+		switch(assignment) {
+		case hamerly:
+			return new HamerlyDNAAssigner(strands);
+		case elkan:
+			return new ElkanDNAAssigner(strands);
+		default:
+			return new ExactDNAAssigner(strands);
+		}
+	}
+
+        /**
+         * assign:
+         * @param centroids: the current centroids. There are always as many of them during a run.
+         * @param assignments: filled with the index of the nearest centroid of every strand
+         * @return the number of strands whose entry in assignments changed
+         */
+	public abstract int assign(List<DNAStrand> centroids, int[] assignments);
+
+}
@@ -0,0 +1,346 @@
+/**
+ * DNABaseCounts:
+ * Sufficient statistics of a DNA clustering step. For every cluster
+ * (addressed by the index of its centroid) and every position of the
+ * strand we count how many of the assigned strands carry each DNABase.
+ * The new centroid takes the most frequent base at each position.
+ * The counts are kept in a single flat int array laid out as
+ * [cluster][position][base], so partial counts from several processes
+ * can be added up element-wise (e.g. with an MPI.SUM reduction).
+ * The counts can be kept from one iteration to the next: only the strands
+ * that changed cluster are moved (see update, or moveBases and moveStrand to
+ * share the positions among threads), and only the centroids of the clusters
+ * touched since the last computeCentroids are rebuilt.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+public class DNABaseCounts {
+
+        /* number of possible bases at every position (A, G, C, T) */
+	private static final int NUMBER_OF_BASES = DNABase.values().length;
+        /* marks a cluster whose whole count table follows in an encoding, see encodeTouched */
+	private static final int DENSE = -1;
+
+	private int numberOfClusters;
+	private int strandLength;
+        /* flat [cluster][position][base] count table */
+	private int[] counts;
+        /* number of strands assigned to every cluster, times the weight they were counted with */
+	private int[] clusterSizes;
+        /* clusters whose counts changed since the last computeCentroids */
+	private boolean[] touched;
+
+	public DNABaseCounts(int numberOfClusters, int strandLength) {
+		this.numberOfClusters = numberOfClusters;
+		this.strandLength = strandLength;
+		counts = new int[numberOfClusters * strandLength * NUMBER_OF_BASES];
+		clusterSizes = new int[numberOfClusters];
+		touched = new boolean[numberOfClusters];
+	}
+
+        /**
+         * add:
+         * count the bases of a strand assigned to the cluster clusterIndex
+         * @param clusterIndex
+         * @param dna
+         */
+	public void add(int clusterIndex, DNAStrand dna) {
+		add(clusterIndex, dna, 1);
+	}
+
+        /**
+         * add:
+         * count the bases of a strand assigned to the cluster clusterIndex weight times
+         * @param clusterIndex
+         * @param dna
+         * @param weight
+         */
+	public void add(int clusterIndex, DNAStrand dna, int weight) {
+		int offset = clusterIndex * strandLength * NUMBER_OF_BASES;
+
+		for(int i = 0; i < strandLength; i++) {
+			counts[offset + i * NUMBER_OF_BASES + dna.baseOrdinal(i)] += weight;
+		}
+		clusterSizes[clusterIndex] += weight;
+		touched[clusterIndex] = true;
+	}
+
+        /**
+         * decay:
+         * multiply all the counts by factor, rounded to the nearest count, so that the strands
+         * counted so far weigh less than the ones counted next. Counts below 1 / (2 * (1 - factor))
+         * do not shrink when rounded, so the strands should be added with a weight above that.
+         * @param factor: in (0, 1]
+         */
+	public void decay(double factor) {
+		for(int i = 0; i < counts.length; i++) {
+			counts[i] = (int) Math.round(counts[i] * factor);
+		}
+		for(int c = 0; c < numberOfClusters; c++) {
+			clusterSizes[c] = (int) Math.round(clusterSizes[c] * factor);
+		}
+	}
+
+        /**
+         * remove:
+         * take back the bases of a strand that no longer belongs to the cluster clusterIndex
+         * @param clusterIndex
+         * @param dna
+         */
+	public void remove(int clusterIndex, DNAStrand dna) {
+		int offset = clusterIndex * strandLength * NUMBER_OF_BASES;
+
+		for(int i = 0; i < strandLength; i++) {
+			counts[offset + i * NUMBER_OF_BASES + dna.baseOrdinal(i)]--;
+		}
+		clusterSizes[clusterIndex]--;
+		touched[clusterIndex] = true;
+	}
+
+        /**
+         * update:
+         * move every strand whose assignment changed from the counts of its previous cluster
+         * to the counts of its new one, so that the cost is O(changes * length) instead of
+         * recounting every strand
+         * @param strands
+         * @param previousAssignments: the assignments the counts hold, -1 for a strand not
+         * counted yet. Brought up to date with assignments.
+         * @param assignments: the new index of the centroid of every strand
+         */
+	public void update(List<DNAStrand> strands, int[] previousAssignments, int[] assignments) {
+		for(int s = 0; s < assignments.length; s++) {
+			if(previousAssignments[s] != assignments[s]) {
+				if(previousAssignments[s] >= 0) {
+					remove(previousAssignments[s], strands.get(s));
+				}
+				add(assignments[s], strands.get(s));
+				previousAssignments[s] = assignments[s];
+			}
+		}
+	}
+
+        /**
+         * moveBases:
+         * move the bases at the positions [fromPosition, toPosition) of a strand from the counts
+         * of the cluster fromCluster to the counts of the cluster toCluster. Either may be -1,
+         * for a strand that was not counted yet or is no longer counted. Only the counts of
+         * those positions are written, so threads moving different positions do not interfere;
+         * moveStrand completes the move.
+         * @param dna
+         * @param fromCluster
+         * @param toCluster
+         * @param fromPosition
+         * @param toPosition
+         */
+	public void moveBases(DNAStrand dna, int fromCluster, int toCluster, int fromPosition, int toPosition) {
+		int fromOffset = fromCluster * strandLength * NUMBER_OF_BASES;
+		int toOffset = toCluster * strandLength * NUMBER_OF_BASES;
+
+		for(int i = fromPosition; i < toPosition; i++) {
+			int base = i * NUMBER_OF_BASES + dna.baseOrdinal(i);
+			if(fromCluster >= 0) {
+				counts[fromOffset + base]--;
+			}
+			if(toCluster >= 0) {
+				counts[toOffset + base]++;
+			}
+		}
+	}
+
+        /**
+         * moveStrand:
+         * move a strand whose bases were moved with moveBases from the size of fromCluster to
+         * the size of toCluster
+         * @param fromCluster
+         * @param toCluster
+         */
+	public void moveStrand(int fromCluster, int toCluster) {
+		if(fromCluster >= 0) {
+			clusterSizes[fromCluster]--;
+			touched[fromCluster] = true;
+		}
+		if(toCluster >= 0) {
+			clusterSizes[toCluster]++;
+			touched[toCluster] = true;
+		}
+	}
+
+        /**
+         * encodeTouched:
+         * write the clusters touched since the last reset into buffer, e.g. the counts of the
+         * changes of an iteration, so that only what changed travels. For every cluster whose
+         * counts are not all 0: its index, its size and the number of counts that are not 0,
+         * followed by their (index in the count table of the cluster, count) pairs. When the
+         * pairs would be longer than the count table, DENSE and the whole table follow instead.
+         * @param buffer: room for encodedSize(numberOfClusters, strandLength) ints from offset on
+         * @param offset
+         * @return the number of ints written
+         */
+	public int encodeTouched(int[] buffer, int offset) {
+		int clusterSize = strandLength * NUMBER_OF_BASES;
+		int position = offset;
+		for(int c = 0; c < numberOfClusters; c++) {
+			if(!touched[c]) {
+				continue;
+			}
+			int countsOffset = c * clusterSize;
+			int nonZero = 0;
+			for(int i = 0; i < clusterSize; i++) {
+				if(counts[countsOffset + i] != 0) {
+					nonZero++;
+				}
+			}
+			if(nonZero == 0 && clusterSizes[c] == 0) {
+				continue; //the changes cancelled out
+			}
+			buffer[position++] = c;
+			buffer[position++] = clusterSizes[c];
+			if(2 * nonZero < clusterSize) {
+				buffer[position++] = nonZero;
+				for(int i = 0; i < clusterSize; i++) {
+					if(counts[countsOffset + i] != 0) {
+						buffer[position++] = i;
+						buffer[position++] = counts[countsOffset + i];
+					}
+				}
+			} else {
+				buffer[position++] = DENSE;
+				System.arraycopy(counts, countsOffset, buffer, position, clusterSize);
+				position += clusterSize;
+			}
+		}
+		return position - offset;
+	}
+
+        /**
+         * addEncoded:
+         * add the clusters written by encodeTouched (e.g. the changes counted by another process)
+         * to these counts
+         * @param buffer
+         * @param offset
+         * @param length: number of ints encodeTouched wrote
+         */
+	public void addEncoded(int[] buffer, int offset, int length) {
+		int clusterSize = strandLength * NUMBER_OF_BASES;
+		int position = offset;
+		while(position < offset + length) {
+			int c = buffer[position++];
+			clusterSizes[c] += buffer[position++];
+			int countsOffset = c * clusterSize;
+			int nonZero = buffer[position++];
+			if(nonZero == DENSE) {
+				for(int i = 0; i < clusterSize; i++) {
+					counts[countsOffset + i] += buffer[position + i];
+				}
+				position += clusterSize;
+			} else {
+				for(int i = 0; i < nonZero; i++) {
+					counts[countsOffset + buffer[position]] += buffer[position + 1];
+					position += 2;
+				}
+			}
+			touched[c] = true;
+		}
+	}
+
+        /* size of the largest encoding written by encodeTouched, all the clusters written in full */
+	public static int encodedSize(int numberOfClusters, int strandLength) {
+		return numberOfClusters * (3 + strandLength * NUMBER_OF_BASES);
+	}
+
+        /* set the touched clusters back to no strands, e.g. once the changes they hold have been sent */
+	public void reset() {
+		int clusterSize = strandLength * NUMBER_OF_BASES;
+		for(int c = 0; c < numberOfClusters; c++) {
+			if(touched[c]) {
+				Arrays.fill(counts, c * clusterSize, (c + 1) * clusterSize, 0);
+				clusterSizes[c] = 0;
+			}
+		}
+		clearTouched();
+	}
+
+        /* forget which clusters were touched */
+	private void clearTouched() {
+		Arrays.fill(touched, false);
+	}
+
+        /**
+         * toArray:
+         * flatten the counts into one int array: the count table followed by the
+         * cluster sizes, so that it can be sent or reduced as MPI.INT
+         * @return
+         */
+	public int[] toArray() {
+		int[] array = new int[counts.length + numberOfClusters];
+		System.arraycopy(counts, 0, array, 0, counts.length);
+		System.arraycopy(clusterSizes, 0, array, counts.length, numberOfClusters);
+		return array;
+	}
+
+        /**
+         * fromArray:
+         * rebuild the counts from an array produced by toArray. The array does not say which
+         * clusters changed, so all of them count as touched.
+         * @param array
+         * @param numberOfClusters
+         * @param strandLength
+         * @return
+         */
+	public static DNABaseCounts fromArray(int[] array, int numberOfClusters, int strandLength) {
+		DNABaseCounts baseCounts = new DNABaseCounts(numberOfClusters, strandLength);
+		System.arraycopy(array, 0, baseCounts.counts, 0, baseCounts.counts.length);
+		System.arraycopy(array, baseCounts.counts.length, baseCounts.clusterSizes, 0, numberOfClusters);
+		Arrays.fill(baseCounts.touched, true);
+		return baseCounts;
+	}
+
+        /* size of the array produced by toArray */
+	public static int arraySize(int numberOfClusters, int strandLength) {
+		return numberOfClusters * strandLength * NUMBER_OF_BASES + numberOfClusters;
+	}
+
+        /**
+         * computeCentroids:
+         * For every cluster build a centroid strand holding the most frequent base at
+         * every position. The centroid at index c is always the centroid of cluster c,
+         * so a cluster without any strands keeps its previous centroid. So does a cluster
+         * that was not touched since the last call, its counts are the same.
+         * @param previousCentroids: the centroids the strands were assigned to
+         * @return
+         */
+	public List<DNAStrand> computeCentroids(List<DNAStrand> previousCentroids) {
+		List<DNAStrand> centroids = new ArrayList<DNAStrand>(numberOfClusters);
+		DNABase[] possibleDNABases = DNABase.values();
+
+		for(int c = 0; c < numberOfClusters; c++) {
+
+			if(clusterSizes[c]==0 || !touched[c]) {
+				centroids.add(previousCentroids.get(c));
+				continue; //cluster has no points or did not change
+			}
+
+			DNABase[] centroidArray = new DNABase[strandLength];
+			int offset = c * strandLength * NUMBER_OF_BASES;
+			for(int i = 0; i < strandLength; i++) {
+				int maxCount = Integer.MIN_VALUE;
+				int maxBase = 0;
+				for(int b = 0; b < NUMBER_OF_BASES; b++) {
+					if(counts[offset + i * NUMBER_OF_BASES + b] > maxCount) {
+						maxCount = counts[offset + i * NUMBER_OF_BASES + b];
+						maxBase = b;
+					}
+				}
+				centroidArray[i] = possibleDNABases[maxBase];
+			}
+			centroids.add(new DNAStrand(centroidArray));
+		}
+		clearTouched();
+
+		return centroids;
+	}
+
+}
@@ -0,0 +1,191 @@
+/**
+ * DNACollectiveClustering:
+ * Implements a parallel version of K-means on DNA strands built on
+ * collective operations (see Communicator). Every process, including Process-0, reads its
+ * own portion of the strands. In every iteration each process counts the
+ * bases of its strands per cluster and position, the counts are combined
+ * with an Allreduce and every process recalculates the same centroids.
+ * Within a process the portion is shared by a pool of threads (--threads)
+ * whose partial counts are merged before the Allreduce.
+ */
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class DNACollectiveClustering {
+
+        /* number of clusters */
+	private int k;
+        /* the portion of DNA strands owned by this process */
+	private List<DNAStrand> strandPortionList = null;
+        /* threads sharing the local portion, and the work they do in every iteration */
+	private ForkJoinPool pool = null;
+	private ForkJoinDNAAssignment assignment = null;
+        /* current list of centroids */
+	private List<DNAStrand> centroids = null;
+        /* number of bases in every strand */
+	private int strandLength;
+        /* how the initial centroids are chosen, and when to stop */
+	private Seeding seeding;
+	private ClusteringOptions options;
+        /* the processes taking part, and the messages between them */
+	private Communicator communicator;
+	private int numberOfProcesses = 0;
+	private int myRank;
+
+        /**
+         * Constructor that initializes the parallel clustering data structures
+         * @param communicator: the processes taking part, this one included
+         * @param k
+         * @param inputFileName: CSV file of DNA strands, every process reads its own part of it
+         * @param options: how the strands are assigned to the centroids
+         * @throws IOException
+         */
+	public DNACollectiveClustering(Communicator communicator, int k, String inputFileName, ClusteringOptions options) throws IOException {
+		this.k = k;
+		this.communicator = communicator;
+		initialize(inputFileName, options);
+	}
+
+        /**
+         * initialize: get the number of processes and the rank of the current one.
+         * Read the local portion of the input: process i reads part i of numberOfProcesses.
+         * @param inputFileName
+         * @throws IOException
+         */
+	private void initialize(String inputFileName, ClusteringOptions options) throws IOException {
+		seeding = options.getSeeding();
+		this.options = options;
+
+		numberOfProcesses = communicator.getSize();
+		myRank = communicator.getRank();
+
+		strandPortionList = InputPartitionReader.readDNAStrands(inputFileName, myRank, numberOfProcesses);
+
+                /* a process may have read no strands at all, so agree on the strand length */
+		int[] localLength = {strandPortionList.isEmpty() ? 0 : strandPortionList.get(0).length()};
+		int[] globalLength = new int[1];
+		communicator.allreduceMax(localLength, globalLength, 1);
+		strandLength = globalLength[0];
+
+		pool = new ForkJoinPool(options.getThreads());
+		assignment = new ForkJoinDNAAssignment(strandPortionList, strandLength, options.getAssignment(), pool);
+	}
+
+        /**
+         * createInitialCentroids:
+         * With Seeding.kmeansplusplus every process takes part in k-means|| (see DNASeeding).
+         * Otherwise choose the initial k centroids randomly from within the available DNAStrand.
+         * The portion sizes are exchanged with an Allgather, Process-0 picks k distinct
+         * random positions in the whole input (all of them if there are fewer, the last one
+         * repeated for the remaining centroids) and broadcasts them, and every process fills
+         * in the packed words of the chosen strands it owns. Each word is contributed by
+         * exactly one process, so an Allreduce(SUM) gives every process all the centroids.
+         * @throws IOException
+         */
+	private void createInitialCentroids() throws IOException {
+
+		if(seeding == Seeding.kmeansplusplus) {
+			centroids = DNASeeding.chooseKMeansParallel(communicator, strandPortionList, strandLength, k, new Random());
+			return;
+		}
+
+		int[] portionSize = {strandPortionList.size()};
+		int[] portionSizes = new int[numberOfProcesses];
+		communicator.allgather(portionSize, 1, portionSizes);
+
+		long numberOfStrands = 0;
+		long myOffset = 0;
+		for(int i = 0; i < numberOfProcesses; i++) {
+			if(i < myRank) {
+				myOffset += portionSizes[i];
+			}
+			numberOfStrands += portionSizes[i];
+		}
+
+		if(numberOfStrands == 0) {
+			throw new IllegalArgumentException("Can not cluster the strands, no process holds any");
+		}
+
+		long[] chosen = new long[k];
+		if(myRank==0) {
+			Random rand = new Random();
+			HashSet<Long> chosenSet = new HashSet<Long>();
+			int c = 0;
+			while(c < Math.min(k, numberOfStrands)) {
+				long index = (long) (rand.nextDouble() * numberOfStrands);
+				if(chosenSet.add(index)) {
+					chosen[c++] = index;
+				}
+			}
+                        /* with fewer strands than k the remaining centroids repeat the last one (their clusters stay empty) */
+			for(; c < k; c++) {
+				chosen[c] = chosen[c - 1];
+			}
+		}
+		communicator.bcast(chosen, 0, k, 0);
+
+		int wordsPerStrand = DNAStrand.wordsPerStrand(strandLength);
+		long[] localCentroids = new long[k * wordsPerStrand];
+		for(int c = 0; c < k; c++) {
+			if(chosen[c] >= myOffset && chosen[c] < myOffset + strandPortionList.size()) {
+				strandPortionList.get((int) (chosen[c] - myOffset)).copyWordsTo(localCentroids, c * wordsPerStrand);
+			}
+		}
+		long[] centroidArray = new long[k * wordsPerStrand];
+		communicator.allreduceSum(localCentroids, centroidArray, centroidArray.length);
+
+		centroids = new ArrayList<DNAStrand>();
+		for(int c = 0; c < k; c++) {
+			centroids.add(new DNAStrand(centroidArray, c * wordsPerStrand, strandLength));
+		}
+	}
+
+        /**
+         * performClustering:
+         * Choose the initial centroids and iterate, every process taking part, until few
+         * enough strands change cluster or the iteration limit is reached. The number of
+         * changed strands is reduced together with the base counts, in an extra last element,
+         * so every process reaches the same decision without another message.
+         * @return: the final list of k centroids on Process-0, null on the other processes
+         * @throws IOException
+         */
+	public List<DNAStrand> performClustering() throws IOException {
+
+		createInitialCentroids();
+
+		int numberOfIterations = options.getMaxIterations();
+		boolean converged = false;
+		int countsSize = DNABaseCounts.arraySize(k, strandLength);
+		long[] numberOfStrands = new long[1];
+		communicator.allreduceSum(new long[] {strandPortionList.size()}, numberOfStrands, 1);
+
+		while(numberOfIterations > 0 && !converged) {
+
+                        /* count the bases of the local portion per cluster and position */
+			int[] localCounts = Arrays.copyOf(assignment.computeBaseCounts(centroids).toArray(), countsSize + 1);
+			localCounts[countsSize] = assignment.getNumberOfChanges();
+			int[] globalCounts = new int[localCounts.length];
+                        /* combine the counts of all processes, every process receives the global counts */
+			communicator.allreduceSum(localCounts, globalCounts, localCounts.length);
+
+			centroids = DNABaseCounts.fromArray(globalCounts, centroids.size(), strandLength).computeCentroids(centroids);
+			converged = options.isConverged(globalCounts[countsSize], numberOfStrands[0]);
+			numberOfIterations--;
+		}
+
+                /* stop the threads of this process */
+		pool.shutdown();
+
+		if(myRank==0) {
+			return centroids;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,164 @@
+/**
+ * DNAMiniBatchClustering:
+ * Implements mini-batch K-means on DNA strands. Every iteration draws a batch
+ * of random strands, assigns them to the nearest centroids and adds their
+ * bases to the base counts of their clusters. The counts are kept over all
+ * the batches, which gives every centroid a learning rate of 1 / (number of
+ * strands it has been given so far): the centroid holds the most frequent
+ * base, at every position, of all the strands ever assigned to it. With a
+ * decay below 1 the counts are multiplied by the decay before every batch,
+ * so that the centroids follow the recent batches rather than the first
+ * ones. The run stops once the batches stop getting nearer to their
+ * centroids (see ClusteringOptions.isMiniBatchConverged). A binary
+ * dataset is sampled straight from the file and never held in memory, a CSV
+ * file is read into memory first.
+ */
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+
+public class DNAMiniBatchClustering {
+
+        /*
+        weight the strands are counted with when the counts decay, so that rounding the decayed
+        counts loses little (see DNABaseCounts.decay)
+         */
+	private static final int DECAYED_WEIGHT = 1024;
+
+	private int k;
+	private String inputFileName;
+	private ClusteringOptions options;
+	private Random rand = new Random();
+        /* the input: an opened binary dataset, or the strands of a CSV file */
+	private BinaryDataset dataset;
+	private List<DNAStrand> strands;
+	private long numberOfStrands;
+	private int strandLength;
+
+	public DNAMiniBatchClustering(int k, String inputFileName, ClusteringOptions options) {
+		this.k = k;
+		this.inputFileName = inputFileName;
+		this.options = options;
+	}
+
+        /**
+         * performClustering:
+         * Step-1: Choose the initial list of centroids (see Seeding) from a sample of the input.
+         * Step-2: Draw a batch, assign it to the centroids and measure its cost, the mean
+         * distance of its strands from their centroids.
+         * Step-3: Decay the counts of all the batches so far, add the bases of the batch and
+         * take the most frequent base at every position
+         * Repeat Steps 2 and 3 until the cost has not gone down for --patience batches, at most
+         * for the maximum number of iterations
+         * @return
+         * @throws IOException
+         */
+	public List<DNAStrand> performClustering() throws IOException {
+		openInput();
+		try {
+			int batchSize = options.getBatchSize();
+			List<DNAStrand> centroids = DNASeeding.chooseCentroids(options.getSeeding(), sample(Math.max(batchSize, k)), k, rand);
+			DNABaseCounts baseCounts = new DNABaseCounts(k, strandLength);
+			int[] assignments = new int[batchSize];
+			double decay = options.getDecay();
+			int weight = (decay < 1) ? decayedWeight(decay, batchSize) : 1;
+			double lowestCost = Double.POSITIVE_INFINITY;
+			int quietBatches = 0;
+
+			for(int iteration = 0; iteration < options.getMaxIterations(); iteration++) {
+				List<DNAStrand> batch = sample(batchSize);
+                                /* bounds would not carry over to the next batch, so the batch is assigned exactly */
+				DNAAssigner.create(Assignment.exact, batch).assign(centroids, assignments);
+				double cost = cost(batch, centroids, assignments);
+				if(cost < lowestCost) {
+					lowestCost = cost;
+					quietBatches = 0;
+				} else if(options.isMiniBatchConverged(++quietBatches)) {
+					break;
+				}
+				if(decay < 1) {
+					baseCounts.decay(decay);
+				}
+				for(int s = 0; s < batch.size(); s++) {
+					baseCounts.add(assignments[s], batch.get(s), weight);
+				}
+				centroids = baseCounts.computeCentroids(centroids);
+			}
+
+			return centroids;
+		} finally {
+			if(dataset != null) {
+				dataset.close();
+			}
+		}
+	}
+
+        /**
+         * cost:
+         * @param batch
+         * @param centroids
+         * @param assignments: index of the centroid of every strand of batch
+         * @return the mean distance of the strands of batch from their centroids
+         */
+	private static double cost(List<DNAStrand> batch, List<DNAStrand> centroids, int[] assignments) {
+		long distance = 0;
+		for(int s = 0; s < batch.size(); s++) {
+			distance += batch.get(s).distance(centroids.get(assignments[s]));
+		}
+		return (double) distance / batch.size();
+	}
+
+        /**
+         * decayedWeight:
+         * The counts of a cluster level off at weight * (strands per batch) / (1 - decay), so the
+         * weight is DECAYED_WEIGHT unless that could overflow the counts
+         * @param decay: below 1
+         * @param batchSize
+         * @return
+         */
+	private static int decayedWeight(double decay, int batchSize) {
+		double largest = Integer.MAX_VALUE / 2 * (1 - decay) / batchSize;
+		return (int) Math.max(1, Math.min(DECAYED_WEIGHT, largest));
+	}
+
+	private void openInput() throws IOException {
+		if(BinaryDataset.isBinaryDataset(inputFileName)) {
+			dataset = BinaryDataset.open(inputFileName, DataType.dna);
+			numberOfStrands = dataset.getCount();
+			strandLength = dataset.getDimension();
+		} else {
+			strands = InputPartitionReader.readDNAStrands(inputFileName, 0, 1, options.getThreads());
+			numberOfStrands = strands.size();
+			strandLength = strands.get(0).length();
+		}
+	}
+
+        /**
+         * sample:
+         * draw size strands uniformly at random, with replacement. The positions are sorted so
+         * that a binary dataset is read front to back.
+         * @param size
+         * @return
+         * @throws IOException
+         */
+	private List<DNAStrand> sample(int size) throws IOException {
+		long[] indices = new long[size];
+		for(int i = 0; i < size; i++) {
+			indices[i] = (long) (rand.nextDouble() * numberOfStrands);
+		}
+		Arrays.sort(indices);
+
+		if(dataset != null) {
+			return dataset.readDNAStrands(indices);
+		}
+		List<DNAStrand> batch = new ArrayList<DNAStrand>(size);
+		for(long index : indices) {
+			batch.add(strands.get((int) index));
+		}
+		return batch;
+	}
+
+}
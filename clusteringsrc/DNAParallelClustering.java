@@ -1,113 +1,258 @@
 /**
  * DNAParallelClustering: Implements the logic for the parallel version of K-means
- * algorithm on DNA strands
+ * algorithm on DNA strands. Every participant shares the assignment of its portion
+ * among a pool of threads (--threads), so one participant per node is enough.
+ * The participants count the bases of their strands per cluster and position, and
+ * Process-0 never holds any strands: it only keeps the base counts of the whole
+ * input. With direct reduction every participant sends Process-0 the changes of its
+ * counts, for the clusters its strands moved into or out of. With tree reduction the
+ * participants add up their full counts along a binomial tree (see TreeReduction).
+ * With dynamic scheduling Process-0 moves chunks of the input from slow to fast
+ * participants (see ChunkSchedule).
  */
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
-import mpi.*;
 
 public class DNAParallelClustering {
 
-        /* MPI message tag used when sending over centroid locations to participants */
+        /* message tag used when sending over centroid locations to participants */
 	private static final int CENTROID_TAG = 1;
-        /* MPI message tag used when sending over a portion of DNA strands to participants */
-	private static final int DNA_PORTION_TAG = 2;
-        /* MPI message tag used when sending over the computation result from participants to Process-0 */
+        /* message tag used when choosing the initial centroids randomly */
+	private static final int SEED_TAG = 2;
+        /* message tag used when sending over the computation result from participants to Process-0 */
 	private static final int RESULT_TAG = 3;
-        /* MPI message tag used when informing the participants about completion of the task */
+        /* message tag used when informing the participants about completion of the task */
 	private static final int COMPLETED_TAG = 4;
-	
-	private static final int MAX_ITERATIONS = 100;
+        /* message tag used when telling a participant which chunks of the input it holds now */
+	private static final int SCHEDULE_TAG = 6;
 
         /* number of clusters */
 	private int k;
-        /* list of DNA strands */
-	private List<DNAStrand> strands = null;
         /* current list of centroids */
-        private List<DNAStrand> centroids = null;
-        private List<DNAStrand> strandPortionList = null;
-        /* Mapping between a cluster's centroid DNAStrand and the DNAStrands belonging to that cluster */
-        private HashMap<DNAStrand, List<DNAStrand>> finalMap = null;
-        /* number of processes running in the MPI environment */
+	private List<DNAStrand> centroids = null;
+        /* the strands of a participant, all its chunks one after the other */
+	private List<DNAStrand> strandPortionList = null;
+        /* the chunks of the input a participant holds, by chunk number */
+	private Map<Integer, List<DNAStrand>> chunkPortions = new HashMap<Integer, List<DNAStrand>>();
+	private String inputFileName;
+	private int numberOfChunks;
+        /* which participant holds which chunks (Process-0 only) */
+	private ChunkSchedule schedule = null;
+        /* threads sharing the assignment of the portion of a participant */
+	private ForkJoinPool pool = null;
+	private ForkJoinDNAAssignment assignment = null;
+        /* base counts of the whole input (Process-0 only) */
+	private DNABaseCounts baseCounts = null;
+        /*
+        the changes of the base counts of a participant that Process-0 has not been sent yet,
+        with direct reduction
+         */
+	private DNABaseCounts countChanges = null;
+        /* the processes taking part, and the messages between them */
+	private Communicator communicator;
 	private int numberOfProcesses = 0;
+        /* upper limit on the number of iterations and the convergence test */
+	private ClusteringOptions options;
         /* rank of the current process */
 	private int myRank;
-        /* splitSize = how many DNAStrands does each process get for computation */
-	private int splitSize;
+        /* number of bases in every strand */
+	private int strandLength;
+        /* number of strands of the whole input */
+	private int numberOfStrands;
+        /* number of longs holding the packed bases of one strand */
+	private int wordsPerStrand;
+        /*
+        Reusable message buffers. Centroids travel as their packed words. The result of a
+        participant is the number of its strands that changed cluster followed by its base
+        counts: with direct reduction only the counts its changes made differ from 0 (see
+        DNABaseCounts.encodeTouched), with tree reduction all of them.
+         */
+	private long[] centroidBuffer;
+	private int[] countsBuffer;
+        /* with tree reduction, the counts received from a child in the reduction tree */
+	private int[] reductionBuffer;
+        /*
+        Process-0 only: one counts buffer per participant, so that all the results can be
+        received at the same time, and the pending non-blocking sends and receives
+         */
+	private int[][] countsBuffers;
+	private MessageRequest[] centroidRequests;
+	private MessageRequest[] resultRequests;
 	
         /**
          * Constructor that initializes the parallel clustering data structures
-         * @param args
+         * @param communicator: the processes taking part, this one included
          * @param k
-         * @param dnaStrands
-         * @throws MPIException
+         * @param inputFileName: CSV file of DNA strands, every participant reads its own part of it
+         * @param options: how the strands are assigned to the centroids
+         * @throws IOException
          */
-	public DNAParallelClustering(String[] args, int k, List<DNAStrand> dnaStrands) throws MPIException {
+	public DNAParallelClustering(Communicator communicator, int k, String inputFileName, ClusteringOptions options) throws IOException {
 		this.k = k;		
-		initialize(args, dnaStrands);
-                /*
-                splitSize = (total number of DNA strands) / (number of processes - 1)
-                In our design, the Process-0 acts like the master process and assigns computation work
-                to other processes. Hence, (numberOfProcesses - 1)
-                 */
-		splitSize = (int) Math.ceil( ((double) dnaStrands.size()) / ((double) (numberOfProcesses - 1)) );
+		this.communicator = communicator;
+		this.options = options;
+		initialize(inputFileName, options);
 	}
 
         /**
-         * initialize: get the number of processes in the MPI environment and get current rank.
-         * Calculate initial centroid locations.
-         * @param args
-         * @param dnaStrands
-         * @throws MPIException
+         * initialize: get the number of processes and the rank of the current one.
+         * Read the input and calculate initial centroid locations.
+         * In our design, the Process-0 acts like the master process and assigns computation work
+         * to other processes. Hence the input is split into (numberOfProcesses - 1) parts, or
+         * chunksPerProcess times as many chunks with dynamic scheduling, and participant i reads
+         * part i-1 (its share of the chunks). Process-0 never holds any strands, it learns the
+         * strand length and the number of strands from the participants.
+         * @param inputFileName
+         * @throws IOException
          */
-	private void initialize(String[] args, List<DNAStrand> dnaStrands) throws MPIException {
-		MPI.Init(args);
+	private void initialize(String inputFileName, ClusteringOptions options) throws IOException {
 
                 /* get number of processes */
-		numberOfProcesses = MPI.COMM_WORLD.Size();
+		numberOfProcesses = communicator.getSize();
+		if(numberOfProcesses < 2) {
+			throw new IllegalArgumentException("The parallel mode needs at least 2 processes, "
+					+ "Process-0 and a participant holding the input");
+		}
                 /* get current rank */
-		myRank = MPI.COMM_WORLD.Rank();
+		myRank = communicator.getRank();
+		this.inputFileName = inputFileName;
+		numberOfChunks = (numberOfProcesses - 1) * options.getChunksPerParticipant();
 		
+		if(myRank!=0) {
+			pool = new ForkJoinPool(options.getThreads());
+			readChunks(ChunkSchedule.initialChunks(myRank, options.getChunksPerParticipant()), options.getChunksPerParticipant());
+		}
+                /* participants with an empty portion, and Process-0, do not know the strand length otherwise */
+		int[] local = {(myRank==0 || strandPortionList.isEmpty()) ? 0 : strandPortionList.get(0).length()};
+		int[] global = new int[1];
+		communicator.allreduceMax(local, global, 1);
+		strandLength = global[0];
+		local[0] = (myRank==0) ? 0 : strandPortionList.size();
+		communicator.allreduceSum(local, global, 1);
+		numberOfStrands = global[0];
+		if(numberOfStrands == 0) {
+			throw new IllegalArgumentException("Can not cluster the strands, no participant holds any");
+		}
+
+		wordsPerStrand = DNAStrand.wordsPerStrand(strandLength);
+		centroidBuffer = new long[k * wordsPerStrand];
+		if(options.getReduction() == Reduction.tree) {
+			countsBuffer = new int[DNABaseCounts.arraySize(k, strandLength) + 1];
+			reductionBuffer = new int[countsBuffer.length];
+		} else {
+			countsBuffer = new int[DNABaseCounts.encodedSize(k, strandLength) + 1];
+		}
+
 		if(myRank==0) {
-			this.strands = dnaStrands; 
+			schedule = new ChunkSchedule(numberOfProcesses - 1, options.getChunksPerParticipant());
+			centroidRequests = new MessageRequest[numberOfProcesses - 1];
+			resultRequests = new MessageRequest[numberOfProcesses - 1];
+			if(options.getReduction() == Reduction.direct) {
+				countsBuffers = new int[numberOfProcesses][];
+				for(int i = 1; i < numberOfProcesses; i++) {
+					countsBuffers[i] = new int[countsBuffer.length];
+				}
+			}
+		} else {
+			resetAssignment();
+		}
+
+		if(options.getSeeding() == Seeding.kmeansplusplus) {
+                        /* every process takes part in k-means||, Process-0 with no strands */
+			List<DNAStrand> portion = (myRank==0) ? new ArrayList<DNAStrand>() : strandPortionList;
+			List<DNAStrand> seeds = DNASeeding.chooseKMeansParallel(communicator, portion, strandLength, k, new Random());
+			if(myRank==0) {
+				centroids = seeds;
+			}
+		} else if(myRank==0) {
 			createInitialCentroids();
+		} else {
+			sendSeedCandidates();
+		}
+		if(myRank==0) {
+			baseCounts = new DNABaseCounts(centroids.size(), strandLength);
 		}
 	}
 
         /**
          * createInitialCentroids:
-         * Choose the initial k centroids randomly from within the available DNAStrand.
+         * Choose the initial k centroids randomly from within the available strands.
+         * The master learns how many strands every participant holds, picks k distinct
+         * random positions in the whole input (all of them if there are fewer) and asks the
+         * owning participants for the bases of those strands.
+         * @throws IOException
          */
-	private void createInitialCentroids() {
+	private void createInitialCentroids() throws IOException {
+
 		Random rand = new Random();
 		centroids = new ArrayList<DNAStrand>();
-		
-		for(int i = 0; i < k; i++) {
-			int index = rand.nextInt(strands.size());
-			DNAStrand dna = (DNAStrand) strands.get(index).clone();
-			
-			while(centroids.contains(dna)) {
-				index = rand.nextInt(strands.size());
-				dna = (DNAStrand) strands.get(index).clone();
+		int[] portionSizes = new int[numberOfProcesses];
+		int[] count = new int[1];
+
+		for(int i = 1; i < numberOfProcesses; i++) {
+			communicator.recv(count, 0, 1, i, SEED_TAG);
+			portionSizes[i] = count[0];
+		}
+
+		HashSet<Long> chosen = new HashSet<Long>();
+		while(chosen.size() < Math.min(k, numberOfStrands)) {
+			chosen.add((long) (rand.nextDouble() * numberOfStrands));
+		}
+
+		long offset = 0;
+		int[] localIndices = new int[k];
+		for(int i = 1; i < numberOfProcesses; i++) {
+			int m = 0;
+			for(long index : chosen) {
+				if(index >= offset && index < offset + portionSizes[i]) {
+					localIndices[m++] = (int) (index - offset);
+				}
 			}
-			
-			centroids.add(dna);			
+			communicator.send(localIndices, 0, m, i, SEED_TAG);
+			communicator.recv(centroidBuffer, 0, m * wordsPerStrand, i, SEED_TAG);
+			for(int c = 0; c < m; c++) {
+				centroids.add(new DNAStrand(centroidBuffer, c * wordsPerStrand, strandLength));
+			}
+			offset += portionSizes[i];
 		}
 	}
 
+        /**
+         * sendSeedCandidates:
+         * participant side of createInitialCentroids. Report the size of the local portion
+         * and send the packed words of the strands the master picked from it.
+         * @throws IOException
+         */
+	private void sendSeedCandidates() throws IOException {
+
+		int[] count = {strandPortionList.size()};
+		communicator.send(count, 0, 1, 0, SEED_TAG);
+
+		int[] localIndices = new int[k];
+		MessageStatus status = communicator.recv(localIndices, 0, k, 0, SEED_TAG);
+		int m = status.getCount();
+		for(int c = 0; c < m; c++) {
+			strandPortionList.get(localIndices[c]).copyWordsTo(centroidBuffer, c * wordsPerStrand);
+		}
+		communicator.send(centroidBuffer, 0, m * wordsPerStrand, 0, SEED_TAG);
+	}
+
         /**
          * performClustering:
          * Check the rank of the current process and accordingly perform master tasks or
          * participant tasks
          * @return: the final list of k centroids
-         * @throws MPIException
+         * @throws IOException
          */
-	public List<DNAStrand> performClustering() throws MPIException {
+	public List<DNAStrand> performClustering() throws IOException {
 		
 		long timeTaken;
 		long endTime;
@@ -115,24 +260,25 @@ public class DNAParallelClustering {
 		
 		if(myRank==0) {
 			/* This process is the master */
-                        // set the max number of iterations to 10000
-            int numberOfIterations = MAX_ITERATIONS;
+                        /* stop when few enough strands change cluster, or at the iteration limit */
+			int numberOfIterations = options.getMaxIterations();
+			boolean converged = false;
 			
-			while(numberOfIterations > 0) {
-                                /* send the centroids and DNAStrand portions to the participants */
-				if(numberOfIterations==MAX_ITERATIONS) {
-					sendPortionToAllParticipantProcesses();
-				}
+			while(numberOfIterations > 0 && !converged) {
+                                /* send the centroids to the participants */
 				sendCentroidsToAllParticipantProcesses();
 				
                                 /* receive intermedite/final results from the participants */
-				receiveFromAllParticipantProcesses();
+				int changes = receiveFromAllParticipantProcesses();
 				                /* recalculate the centroid locations */
 				centroids = recalculateCentroidLocations();
-				                /* reset finalMap */
-				finalMap = null;
+				converged = options.isConverged(changes, numberOfStrands);
                                 /* decrement number of iterations */
 				numberOfIterations--;
+                                /* move chunks to the participants that answered faster */
+				if(options.getScheduling() == Scheduling.dynamic) {
+					schedule.rebalance();
+				}
 			}
 
                         /*
@@ -140,27 +286,21 @@ public class DNAParallelClustering {
                         participants
                          */
 			for(int i = 1; i < numberOfProcesses; i++) {
-				MPI.COMM_WORLD.Send(null, 0, 0, MPI.OBJECT, i, COMPLETED_TAG);
+				communicator.send(centroidBuffer, 0, 0, i, COMPLETED_TAG);
 			}
 
-                        /* Finalize MPI environment on the master */
-			MPI.Finalize();
 		}
 		
 		else {
-			Object[] strandPortionArray = new Object[splitSize];
-            /* receive portions */
-			MPI.COMM_WORLD.Recv(strandPortionArray, 0, splitSize, MPI.OBJECT, 0, DNA_PORTION_TAG);
-			strandPortionList = convertArrayToList(strandPortionArray);
 			
-            /* run in a while loop until Process-0 sends a completion message */
+                        /* run in a while loop until Process-0 sends a completion message */
 			boolean cont = true;			
 			while(cont) {
 				cont = receiveFromMasterProcess();
 			}
 
-                        /* Finalize MPI environment on the participant */
-			MPI.Finalize();
+                        /* stop the threads of the participant */
+			pool.shutdown();
 		}
 
                 /* return the final centroid list */
@@ -169,282 +309,181 @@ public class DNAParallelClustering {
 
         /**
          * recalculateCentroidLocations:
-         * recalculate centroid locations based on intermediate results from participant processes
+         * recalculate centroid locations from the base counts of the whole input. The base
+         * counts were already brought up to date while receiving, only the clusters that
+         * changed are rebuilt.
          * @return
          */
 	private List<DNAStrand> recalculateCentroidLocations() {
 
-                /* Get all the DNAStrand lists corresponding to every centroid DNAStrand */
-		Collection<List<DNAStrand>> lists = finalMap.values();
-                /* create temporary centroids list */
-		List<DNAStrand> tmpCentroids = new ArrayList<DNAStrand>();
-                /* get the length of a single DNA */
-		int strandSize = strands.get(0).getDNA_Array().length;
-
-		for(List<DNAStrand> l_dna : lists) {
-			
-			if(l_dna.size()==0) {
-				System.out.println("There exists a cluster centroid with no points"
-						+ " assigned to it. You may end up with fewer clusters than expected.");
-				continue; //cluster has no points
-			}
-			
-			int strandIndex = 0;
-			DNABase[] centroidArray = new DNABase[strandSize];
-			while(strandIndex < strandSize) {
-				
-				HashMap<DNABase, Integer> baseCountMap = makeBaseCountMap();
-				
-				for(DNAStrand dna : l_dna) {
-					
-					DNABase base = dna.getDNA_Array()[strandIndex];
-					int baseCount = baseCountMap.get(base);
-					baseCount++;
-					baseCountMap.put(base, baseCount);
-					
-				}
-				
-				DNABase maxCountBase = getMaxCountBase(baseCountMap);
-				centroidArray[strandIndex] = maxCountBase;
-				strandIndex++;
-			}
-			DNAStrand centroid = new DNAStrand(centroidArray);
-			tmpCentroids.add(centroid);
-		}
-		
-		return tmpCentroids;
-
-	}
-	
-	private DNABase getMaxCountBase(HashMap<DNABase, Integer> baseCountMap) {
-		int count = Integer.MIN_VALUE;
-		DNABase maxCountBase = null;
-		
-		for(DNABase base : DNABase.values()) {
-			
-			if(baseCountMap.get(base) > count) {
-				count = baseCountMap.get(base);
-				maxCountBase = base;
-			}
-		}
-		return maxCountBase;
-	}
+		return baseCounts.computeCentroids(centroids);
 
-	private HashMap<DNABase, Integer> makeBaseCountMap() {
-		
-		HashMap<DNABase, Integer> baseCountMap = new HashMap<DNABase, Integer>();
-		
-		for(DNABase base : DNABase.values()) {
-			baseCountMap.put(base, 0);
-		}
-		
-		return baseCountMap;
 	}
 
         /**
          * receiveFromAllParticipantProcesses:
-         * get intermediate/final result from the participant processes and merge all the
-         * results
-         * @throws MPIException
+         * get intermediate/final result from the participant processes and add the changes of
+         * their base counts to the counts of the whole input, in the order they arrive, so a
+         * slow participant does not hold up the results that are already there.
+         * With tree reduction the participants have added up most of the base counts and
+         * changes already, and Process-0, taking part with no strands, only adds the counts of
+         * its children in the tree.
+         * @return the number of strands that changed cluster
+         * @throws IOException
          */
-	private void receiveFromAllParticipantProcesses() throws MPIException {
+	private int receiveFromAllParticipantProcesses() throws IOException {
 		
-		Iterator<DNAStrand> itr = strands.iterator();
+		int changes = 0;
 		
-		for(int idx = 1; idx < numberOfProcesses; idx++) {
-                        /* receive the result in a single object */
-			Object[] result = new Object[1];
-			MPI.COMM_WORLD.Recv(result, 0, 1, MPI.OBJECT, idx, RESULT_TAG);
-			List<Integer> centroidIndices = (List<Integer>) result[0];
-			//mergeMap(map);
-			itr = updateFinalMap(centroidIndices, itr);
+		if(options.getReduction() == Reduction.tree) {
+			int countsSize = DNABaseCounts.arraySize(centroids.size(), strandLength);
+			Arrays.fill(countsBuffer, 0);
+			TreeReduction.reduce(communicator, countsBuffer, countsSize + 1, reductionBuffer, RESULT_TAG);
+			baseCounts = DNABaseCounts.fromArray(countsBuffer, centroids.size(), strandLength);
+			communicator.waitAll(centroidRequests);
+			return countsBuffer[countsSize];
 		}
 		
-	}
-
-    private Iterator<DNAStrand> updateFinalMap(List<Integer> centroidIndices, Iterator<DNAStrand> itr) {
-    	if(finalMap==null) {
-			finalMap = new HashMap<DNAStrand, List<DNAStrand>>();
-			for(DNAStrand centroid : centroids) {
-				finalMap.put(centroid, new ArrayList<DNAStrand>());
-			}
+		for(int received = 1; received < numberOfProcesses; received++) {
+                        /* the participant sends back its number of changes and the changes of its counts */
+			MessageStatus status = communicator.waitAny(resultRequests);
+			int idx = status.getIndex() + 1;
+			schedule.finished(idx);
+			changes += countsBuffers[idx][0];
+			baseCounts.addEncoded(countsBuffers[idx], 1, status.getCount() - 1);
 		}
-    	
-    	for(Integer index : centroidIndices) {   		
-    		DNAStrand dna = itr.next();
-    		DNAStrand centroid = centroids.get(index);
-    		finalMap.get(centroid).add(dna);
-    	}
-    	
-    	return itr;
+                /* the centroid buffer may be reused once all the centroids have gone out */
+		communicator.waitAll(centroidRequests);
+		
+		return changes;
 	}
 
-		/**
-         * sendToAllParticipantProcesses:
-         * Send centroids and portion of DNAStrands to the participant nodes
-         * @throws MPIException
+        /**
+         * readChunks:
+         * make the given chunks the portion of this participant. Chunks it already holds are
+         * kept, the others are read from the input file.
+         * @param chunks
+         * @param count: number of entries of chunks to use
+         * @throws IOException
          */
-	private void sendCentroidsToAllParticipantProcesses() throws MPIException {
-
-		for(int i=1;i<numberOfProcesses;i++) {
-			Object[] centroidArray = {centroids};
-			MPI.COMM_WORLD.Send(centroidArray, 0, centroidArray.length, MPI.OBJECT, i, CENTROID_TAG);
+	private void readChunks(int[] chunks, int count) throws IOException {
+		Map<Integer, List<DNAStrand>> loaded = new HashMap<Integer, List<DNAStrand>>();
+		strandPortionList = new ArrayList<DNAStrand>();
+		for(int c = 0; c < count; c++) {
+			List<DNAStrand> chunk = chunkPortions.get(chunks[c]);
+			if(chunk == null) {
+				chunk = InputPartitionReader.readDNAStrands(inputFileName, chunks[c], numberOfChunks, options.getThreads());
+			}
+			loaded.put(chunks[c], chunk);
+			strandPortionList.addAll(chunk);
 		}
-		
+		chunkPortions = loaded;
 	}
 
-	private void sendPortionToAllParticipantProcesses() throws MPIException {
-	
-		//now split the DNAStrands and send
-		Object[] dnaStrandsArray = strands.toArray();
-		int i = 1;
-		int offset = 0;
-		int count = splitSize;
-                /* perform the splitting of strands based on splitSize */
-		while (offset + count <= dnaStrandsArray.length) {
-			MPI.COMM_WORLD.Send(dnaStrandsArray, offset, count, MPI.OBJECT, i, DNA_PORTION_TAG);
-			i++;
-			offset = offset + count;
-		}
+        /* start assigning the current portion, the distance bounds of an old portion do not carry over */
+	private void resetAssignment() {
+		assignment = new ForkJoinDNAAssignment(strandPortionList, strandLength, options.getAssignment(), pool);
+	}
 
-                /* send strands which might be remaining from the last split */
-		if (offset < dnaStrandsArray.length) {
-			count = dnaStrandsArray.length - offset;
-			MPI.COMM_WORLD.Send(dnaStrandsArray, offset, count, MPI.OBJECT, i, DNA_PORTION_TAG);
+        /**
+         * loadChunks:
+         * switch this participant to the given chunks. Process-0 holds the counts of the old
+         * portion, so the next answer takes them back out and counts the new portion instead.
+         * @param chunks
+         * @param count: number of entries of chunks to use
+         * @throws IOException
+         */
+	private void loadChunks(int[] chunks, int count) throws IOException {
+		if(countChanges != null) {
+			assignment.uncount(countChanges);
 		}
-		
+		readChunks(chunks, count);
+		resetAssignment();
 	}
-	
+
         /**
-         * mergeMap:
-         * add the strands received from the participants to the finalMap
-         * @param map
+         * sendCentroidsToAllParticipantProcesses:
+         * Send the centroids to the participant nodes as their packed words. The receives of
+         * their results are posted first and nothing waits for the sends to complete.
+         * Participants whose chunks changed are told their new chunks first.
+         * @throws IOException
          */
-	private void mergeMap(HashMap<DNAStrand, List<DNAStrand>> map) {
+	private void sendCentroidsToAllParticipantProcesses() throws IOException {
 
-                /* Create new finalMap if not already existing */
-		if(finalMap==null) {
-			finalMap = new HashMap<DNAStrand, List<DNAStrand>>();
-			for(DNAStrand centroid : centroids) {
-				finalMap.put(centroid, new ArrayList<DNAStrand>());
-			}
+		schedule.startIteration();
+
+		for(int c = 0; c < centroids.size(); c++) {
+			centroids.get(c).copyWordsTo(centroidBuffer, c * wordsPerStrand);
 		}
-		
-		for(DNAStrand centroid : centroids) {
-			List<DNAStrand> strandsToBeAdded = map.get(centroid);
-			if(strandsToBeAdded!=null) {
-				finalMap.get(centroid).addAll(strandsToBeAdded);			
+
+		for(int i=1;i<numberOfProcesses && options.getReduction() == Reduction.direct;i++) {
+			resultRequests[i - 1] = communicator.irecv(countsBuffers[i], 0, countsBuffers[i].length, i, RESULT_TAG);
+		}
+		for(int i=1;i<numberOfProcesses;i++) {
+			if(schedule.hasChanged(i)) {
+				int[] chunks = schedule.getChunks(i);
+				communicator.send(chunks, 0, chunks.length, i, SCHEDULE_TAG);
 			}
 		}
-
+		for(int i=1;i<numberOfProcesses;i++) {
+			centroidRequests[i - 1] = communicator.isend(centroidBuffer, 0, centroids.size() * wordsPerStrand, i, CENTROID_TAG);
+		}
+		
 	}
 
         /**
          * receiveFromMasterProcess:
-         * receive centroids / DNA Portions / Completed message from the Process-0
+         * receive centroids / Completed message from the Process-0. With dynamic scheduling
+         * the centroids may be preceded by the new chunks of this participant.
          * @return
-         * @throws MPIException
+         * @throws IOException
          */
-	private boolean receiveFromMasterProcess() throws MPIException {
+	private boolean receiveFromMasterProcess() throws IOException {
 
-		Status status;
+		MessageStatus status;
 		boolean cont = true;
+
+		if(options.getScheduling() == Scheduling.dynamic
+				&& communicator.probe(0, Communicator.ANY_TAG).getTag() == SCHEDULE_TAG) {
+			int[] chunks = new int[numberOfChunks];
+			status = communicator.recv(chunks, 0, numberOfChunks, 0, SCHEDULE_TAG);
+			loadChunks(chunks, status.getCount());
+		}
 		
-		Object[] centroidArray = new Object[1];
-		status = MPI.COMM_WORLD.Recv(centroidArray, 0, 1, MPI.OBJECT, 0, MPI.ANY_TAG);
-		if (status.tag == COMPLETED_TAG) {
+		status = communicator.recv(centroidBuffer, 0, centroidBuffer.length, 0, Communicator.ANY_TAG);
+		if (status.getTag() == COMPLETED_TAG) {
 			cont = false;
 			return cont;
-		} else if (status.tag == CENTROID_TAG) {
-                        /* store centroid list */
-			List<DNAStrand> centroidList = (List<DNAStrand>) centroidArray[0];	        
-                        
-            /*HashMap<DNAStrand, List<DNAStrand>> centroidToStrand = makeCentroidToStrandsMap(centroidList,
-                                                                    strandPortionList);*/
-			List<Integer> centroidIndices = strandsToCentroidIndices(centroidList);
-            Object[] resultObj = {centroidIndices};
-            MPI.COMM_WORLD.Send(resultObj, 0, 1, MPI.OBJECT, 0, RESULT_TAG);
-		}
-
-		return cont;
-
-	}
-
-	private List<Integer> strandsToCentroidIndices(List<DNAStrand> centroidList) {
-		
-		List<Integer> list = new ArrayList<Integer>();
-		
-		for(DNAStrand dna : strandPortionList) {
-			
-			double minDistance = Double.MAX_VALUE;
-			int centroidIndex = -1;
-			
-			for(int i=0;i<centroidList.size();i++) {
-				
-				DNAStrand centroid = centroidList.get(i);
-				double distance = dna.distance(centroid);
-				
-				if(distance < minDistance) {
-					minDistance = distance;
-					centroidIndex = i;				
-				}
-				
+		} else if (status.getTag() == CENTROID_TAG) {
+                        /* rebuild the centroid list from the received words */
+			int numberOfCentroids = status.getCount() / wordsPerStrand;
+			List<DNAStrand> centroidList = new ArrayList<DNAStrand>();
+			for(int c = 0; c < numberOfCentroids; c++) {
+				centroidList.add(new DNAStrand(centroidBuffer, c * wordsPerStrand, strandLength));
 			}
-			
-			list.add(centroidIndex);
-			
-		}
-		
-		return list;
-	}
 
-	private List<DNAStrand> convertArrayToList(Object[] strandPortionArray) {
-		List<DNAStrand> list = new ArrayList<DNAStrand>();
-		for(Object obj : strandPortionArray) {
-			if(obj!=null) {
-				list.add((DNAStrand) obj);
+			if(options.getReduction() == Reduction.tree) {
+                                /* count the bases of the portion per cluster and position, and add up the counts */
+				int countsSize = DNABaseCounts.arraySize(numberOfCentroids, strandLength);
+				System.arraycopy(assignment.computeBaseCounts(centroidList).toArray(), 0, countsBuffer, 0, countsSize);
+				countsBuffer[countsSize] = assignment.getNumberOfChanges();
+				TreeReduction.reduce(communicator, countsBuffer, countsSize + 1, reductionBuffer, RESULT_TAG);
+				return cont;
 			}
-		}
-		return list;
-	}
-
-        /**
-         * makeCentroidToStrandsMap:
-         * Construct a hashmap between centroids and DNA Strands based on the distances between them
-         * @param centroidList
-         * @param strandPortionList
-         * @return
-         */
-	private HashMap<DNAStrand, List<DNAStrand>> makeCentroidToStrandsMap(List<DNAStrand> centroidList, List<DNAStrand> strandPortionList) {
 
-		HashMap<DNAStrand, List<DNAStrand>> centroidToStrands = new HashMap<DNAStrand, List<DNAStrand>>();
-		
-		for(DNAStrand centroid : centroidList) {
-			centroidToStrands.put(centroid, new ArrayList<DNAStrand>());
-		}
-		
-		for(DNAStrand dna : strandPortionList) {
-			
-			double minDistance = Double.MAX_VALUE;
-			DNAStrand tmpCentroid = null;
-			
-			for(DNAStrand centroid : centroidList) {
-				
-				double distance = dna.distance(centroid);
-				
-				if(distance < minDistance) {
-					minDistance = distance;
-					tmpCentroid = centroid;					
-				}
-				
+                        /* move the strands that changed cluster in the counts of the changes, and send those */
+			if(countChanges == null) {
+				countChanges = new DNABaseCounts(numberOfCentroids, strandLength);
 			}
-			
-			centroidToStrands.get(tmpCentroid).add(dna);
-			
+			assignment.countChanges(centroidList, countChanges);
+			countsBuffer[0] = assignment.getNumberOfChanges();
+			int length = 1 + countChanges.encodeTouched(countsBuffer, 1);
+			countChanges.reset();
+			communicator.send(countsBuffer, 0, length, 0, RESULT_TAG);
 		}
-		
-		return centroidToStrands;
+
+		return cont;
 
 	}
-	
+
 }
@@ -0,0 +1,102 @@
+/**
+ * DNASeeding:
+ * Chooses the initial centroids of the DNA strand engines (see Seeding).
+ * chooseCentroids works on strands held by one process. chooseKMeansParallel
+ * is called by every process of a Communicator with its own portion and
+ * combines the processes with collective operations. Both are the ones of
+ * Seeder; a strand travels as its packed words.
+ * Centroids are copies of input strands, the squared distance is the squared
+ * number of differing bases.
+ */
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class DNASeeding {
+
+	private DNASeeding() {
+	}
+
+        /**
+         * chooseCentroids:
+         * choose k initial centroids from strands held by this process
+         * @param seeding
+         * @param strands
+         * @param k
+         * @param rand
+         * @return
+         */
+	public static List<DNAStrand> chooseCentroids(Seeding seeding, List<DNAStrand> strands, int k, Random rand) {
+		int strandLength = strands.isEmpty() ? 0 : strands.get(0).length();
+		return new Strands(strandLength).chooseCentroids(seeding, strands, k, rand);
+	}
+
+        /**
+         * chooseKMeansParallel:
+         * k-means||, called by every process with its own portion (which may be empty),
+         * see Seeder.chooseKMeansParallel
+         * @param communicator: the processes taking part
+         * @param portion
+         * @param strandLength
+         * @param k
+         * @param rand
+         * @return the same k centroids on every process
+         * @throws IOException
+         */
+	public static List<DNAStrand> chooseKMeansParallel(Communicator communicator, List<DNAStrand> portion, int strandLength, int k, Random rand) throws IOException {
+		return new Strands(strandLength).chooseKMeansParallel(communicator, portion, k, rand);
+	}
+
+        /**
+         * Strands:
+         * the strands of a list, all of the same length, as items of a Seeder
+         */
+	private static class Strands extends Seeder<List<DNAStrand>, DNAStrand> {
+
+		private int strandLength;
+
+		Strands(int strandLength) {
+			super("strands");
+			this.strandLength = strandLength;
+		}
+
+		@Override
+		protected int size(List<DNAStrand> strands) {
+			return strands.size();
+		}
+
+		@Override
+		protected double squaredDistance(List<DNAStrand> strands, int i, List<DNAStrand> others, int j) {
+			double d = strands.get(i).distance(others.get(j));
+			return d * d;
+		}
+
+		@Override
+		protected DNAStrand centroid(List<DNAStrand> strands, int i) {
+			return (DNAStrand) strands.get(i).clone();
+		}
+
+		@Override
+		protected List<DNAStrand> newItems() {
+			return new ArrayList<DNAStrand>();
+		}
+
+		@Override
+		protected int wordsPerItem() {
+			return DNAStrand.wordsPerStrand(strandLength);
+		}
+
+		@Override
+		protected void toWords(List<DNAStrand> strands, int i, long[] words, int offset) {
+			strands.get(i).copyWordsTo(words, offset);
+		}
+
+		@Override
+		protected void addFromWords(List<DNAStrand> strands, long[] words, int offset) {
+			strands.add(new DNAStrand(words, offset, strandLength));
+		}
+	}
+
+}
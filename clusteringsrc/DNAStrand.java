@@ -10,9 +10,19 @@ import java.util.Random;
 
 public class DNAStrand implements Cloneable, Serializable {
 
-        /* A DNA Strand is an array of DNA bases */
-	private DNABase[] DNA_Array;
-	private DNABase[] possibleDNABases = DNABase.values();
+        /* number of bases packed into one long, 2 bits per base */
+	public static final int BASES_PER_WORD = 32;
+        /* the low bit of every 2-bit base */
+	private static final long LOW_BITS = 0x5555555555555555L;
+	private static final DNABase[] possibleDNABases = DNABase.values();
+
+        /*
+        A DNA Strand is a sequence of DNA bases. Every base is stored as its DNABase
+        ordinal in 2 bits: base i lives in bits 2*(i%32) .. 2*(i%32)+1 of words[i/32].
+        Unused bits of the last word are always 0.
+         */
+	private long[] words;
+	private int length;
 
         /**
          * DNAStrand: constructor
@@ -20,13 +30,13 @@ public class DNAStrand implements Cloneable, Serializable {
          * @param lengthOfDNAStrand
          */
 	public DNAStrand(int lengthOfDNAStrand) {
-		DNA_Array = new DNABase[lengthOfDNAStrand];
+		length = lengthOfDNAStrand;
+		words = new long[wordsPerStrand(length)];
 		Random rand = new Random();
 
                 /* Construct a DNAStrand choosing values randomly from possibleDNABases */
-		for(int i=0;i<DNA_Array.length;i++) {
-			int nextIndex = rand.nextInt(possibleDNABases.length);
-			DNA_Array[i] = possibleDNABases[nextIndex];
+		for(int i=0;i<length;i++) {
+			setBase(i, rand.nextInt(possibleDNABases.length));
 		}
 		
 	}
@@ -41,22 +51,21 @@ public class DNAStrand implements Cloneable, Serializable {
          * laid out DNA strands
          */
 	public DNAStrand(DNAStrand baseStrand, int thresholdDistanceBetweenStrandAndBaseStrand) {
-		DNA_Array = baseStrand.getDNA_Array().clone();
+		length = baseStrand.length;
+		words = baseStrand.words.clone();
 		Random rand = new Random();
 		
 		for(int i=1;i<thresholdDistanceBetweenStrandAndBaseStrand;i++) {
-			int nextIndex = rand.nextInt(DNA_Array.length);
-			DNABase value = DNA_Array[nextIndex];
+			int nextIndex = rand.nextInt(length);
+			int value = baseOrdinal(nextIndex);
 			Random randEnum = new Random();
-			int randEnumIndex = randEnum.nextInt(possibleDNABases.length);
-			DNABase differentValue = possibleDNABases[randEnumIndex];
+			int differentValue = randEnum.nextInt(possibleDNABases.length);
 			
 			while(differentValue==value) {
-				randEnumIndex = randEnum.nextInt(possibleDNABases.length);
-				differentValue = possibleDNABases[randEnumIndex];
+				differentValue = randEnum.nextInt(possibleDNABases.length);
 			}
 			
-			DNA_Array[nextIndex] = differentValue;
+			setBase(nextIndex, differentValue);
 			
 		}
 		
@@ -69,21 +78,86 @@ public class DNAStrand implements Cloneable, Serializable {
          */
 	public DNAStrand(String str) {
 		String[] arr = str.split(",");
-		DNA_Array = new DNABase[arr.length];
+		length = arr.length;
+		words = new long[wordsPerStrand(length)];
 		
 		for (int i = 0; i < arr.length; i++) {
-			DNA_Array[i] = DNABase.valueOf(arr[i]);
+			setBase(i, DNABase.valueOf(arr[i]).ordinal());
 		}
 	}
 
 	public DNAStrand(DNABase[] centroidArray) {
-		DNA_Array = new DNABase[centroidArray.length];
+		length = centroidArray.length;
+		words = new long[wordsPerStrand(length)];
 		
-		for(int i = 0; i < DNA_Array.length; i++) {
-			DNA_Array[i] = centroidArray[i];
+		for(int i = 0; i < length; i++) {
+			setBase(i, centroidArray[i].ordinal());
 		}
 	}
 
+        /**
+         * DNAStrand: Constructor
+         * construct a DNA strand from bases encoded as their DNABase ordinals
+         * @param bases
+         * @param offset: index of the first base of this strand in bases
+         * @param length: number of bases in the strand
+         */
+	public DNAStrand(byte[] bases, int offset, int length) {
+		this.length = length;
+		words = new long[wordsPerStrand(length)];
+
+		for(int i = 0; i < length; i++) {
+			words[i >> 5] |= (long) bases[offset + i] << ((i & 31) << 1);
+		}
+	}
+
+        /**
+         * DNAStrand: Constructor
+         * construct a DNA strand from its packed words, as produced by copyWordsTo
+         * @param packedWords
+         * @param offset: index of the first word of this strand in packedWords
+         * @param length: number of bases in the strand
+         */
+	public DNAStrand(long[] packedWords, int offset, int length) {
+		this.length = length;
+		words = new long[wordsPerStrand(length)];
+		System.arraycopy(packedWords, offset, words, 0, words.length);
+	}
+
+        /* number of longs needed to hold a strand of length bases */
+	public static int wordsPerStrand(int length) {
+		return (length + BASES_PER_WORD - 1) / BASES_PER_WORD;
+	}
+
+	private void setBase(int index, int ordinal) {
+		int shift = (index & 31) << 1;
+		words[index >> 5] = (words[index >> 5] & ~(3L << shift)) | ((long) ordinal << shift);
+	}
+
+        /* DNABase ordinal of the base at index */
+	public int baseOrdinal(int index) {
+		return (int) (words[index >> 5] >>> ((index & 31) << 1)) & 3;
+	}
+
+	public DNABase getBase(int index) {
+		return possibleDNABases[baseOrdinal(index)];
+	}
+
+        /**
+         * copyWordsTo:
+         * copy the packed words of this strand into buffer, starting at offset.
+         * Used to send strands as MPI.LONG.
+         * @param buffer
+         * @param offset
+         */
+	public void copyWordsTo(long[] buffer, int offset) {
+		System.arraycopy(words, 0, buffer, offset, words.length);
+	}
+
+	public int length() {
+		return length;
+	}
+
         /**
          * minDistanceFromOtherBaseStrands:
          * Calculate the mininum distance of this strand from all the base strands
@@ -107,36 +181,55 @@ public class DNAStrand implements Cloneable, Serializable {
 
         /**
          * distance:
-         * calculate the distance of this strand from otherStrand
+         * calculate the distance of this strand from otherStrand, i.e. the number of
+         * positions with different bases. XOR leaves a non-zero 2-bit group exactly where
+         * the bases differ; folding every group onto its low bit and counting the bits
+         * handles 32 bases at a time.
          * @param otherStrand
          * @return
          */
 	public int distance(DNAStrand otherStrand) {
-		DNABase[] otherStrandArray = otherStrand.getDNA_Array();
+		long[] otherWords = otherStrand.words;
 		int distance = 0;
 		
-		for(int i=0;i<DNA_Array.length;i++) {
-			if(DNA_Array[i] != otherStrandArray[i]) {
-				distance++;
-			}
+		for(int i=0;i<words.length;i++) {
+			long difference = words[i] ^ otherWords[i];
+			distance += Long.bitCount((difference | (difference >>> 1)) & LOW_BITS);
 		}
 	
 		return distance;
 	}
 	
-	public DNABase[] getDNA_Array() {
-		return DNA_Array;
+        /**
+         * distance:
+         * calculate the distance of this strand from otherStrand, but stop counting once
+         * it reaches bound. Used when only a distance below the best one so far matters.
+         * @param otherStrand
+         * @param bound
+         * @return the distance if it is less than bound, otherwise a value between bound and
+         * the distance
+         */
+	public int distance(DNAStrand otherStrand, int bound) {
+		long[] otherWords = otherStrand.words;
+		int distance = 0;
+
+		for(int i=0;i<words.length && distance < bound;i++) {
+			long difference = words[i] ^ otherWords[i];
+			distance += Long.bitCount((difference | (difference >>> 1)) & LOW_BITS);
+		}
+
+		return distance;
 	}
 
 	public void printDNAStrand() {
-		for(int i=0;i<DNA_Array.length;i++) {
-			System.out.print(DNA_Array[i] + ",");
+		for(int i=0;i<length;i++) {
+			System.out.print(getBase(i) + ",");
 		}
 		System.out.println();
 	}
 
         /**
-         * equals: override equality for DNAStrand based on DNA_Array
+         * equals: override equality for DNAStrand based on its bases
          * @param obj
          * @return
          */
@@ -148,13 +241,7 @@ public class DNAStrand implements Cloneable, Serializable {
 		
 		DNAStrand otherStrand = (DNAStrand) obj;
 		
-		for(int i=0;i<DNA_Array.length;i++) {
-			if(DNA_Array[i]!=otherStrand.getDNA_Array()[i]) {
-				return false;
-			}
-		}
-		
-		return true;
+		return length == otherStrand.length && Arrays.equals(words, otherStrand.words);
 		
 	}
 
@@ -165,8 +252,8 @@ public class DNAStrand implements Cloneable, Serializable {
 	@Override
 	public int hashCode() {
 		int result = 17;
-		result = 31 * Arrays.hashCode(DNA_Array);
-		result = 31 * Arrays.hashCode(possibleDNABases);		
+		result = 31 * result + length;
+		result = 31 * result + Arrays.hashCode(words);
 		return result;
 	}
 
@@ -176,14 +263,14 @@ public class DNAStrand implements Cloneable, Serializable {
          */
 	@Override
 	public String toString() {
-		String dna = "";
-		for(int i = 0; i < DNA_Array.length; i++) {
-			dna += DNA_Array[i];
-			if(i < DNA_Array.length - 1) {
-				dna += ",";
+		StringBuilder dna = new StringBuilder(2 * length);
+		for(int i = 0; i < length; i++) {
+			dna.append(getBase(i));
+			if(i < length - 1) {
+				dna.append(',');
 			}
 		}
-		return dna;
+		return dna.toString();
 	}
 
         /**
@@ -193,7 +280,9 @@ public class DNAStrand implements Cloneable, Serializable {
 	@Override
 	public Object clone() {
 		try {
-			return super.clone();
+			DNAStrand copy = (DNAStrand) super.clone();
+			copy.words = words.clone();
+			return copy;
 		} catch (CloneNotSupportedException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
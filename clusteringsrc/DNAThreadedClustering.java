@@ -0,0 +1,56 @@
+/**
+ * DNAThreadedClustering:
+ * Implements the logic for the shared-memory multi-threaded version of
+ * K-means algorithm on DNA strands. A single process holds all the strands,
+ * the assignment step and the base counting are done by a fork/join pool
+ * (see ForkJoinDNAAssignment).
+ */
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class DNAThreadedClustering {
+
+	private int k;
+	private List<DNAStrand> strands;
+	private ClusteringOptions options;
+
+	public DNAThreadedClustering(int k, List<DNAStrand> dnaStrands, ClusteringOptions options) {
+		this.k = k;
+		this.strands = dnaStrands;
+		this.options = options;
+	}
+
+        /**
+         * performClustering:
+         * Step-1: Choose the initial list of centroids (see Seeding).
+         * Step-2: Let the threads assign the strands and count the bases of every cluster.
+         * Step-3: Recalculate the centroid locations from the counts
+         * Repeat Steps 2 and 3 until few enough strands change cluster (see
+         * ClusteringOptions.isConverged), at most for numberOfIterations
+         * @return
+         */
+	public List<DNAStrand> performClustering() {
+		List<DNAStrand> centroids = DNASeeding.chooseCentroids(options.getSeeding(), strands, k, new Random());
+		int numberOfIterations = options.getMaxIterations();
+		boolean converged = false;
+
+		ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+		try {
+			ForkJoinDNAAssignment assignment = new ForkJoinDNAAssignment(strands, strands.get(0).length(),
+					options.getAssignment(), pool);
+			while(numberOfIterations > 0 && !converged) {
+
+				centroids = assignment.computeBaseCounts(centroids).computeCentroids(centroids);
+				converged = options.isConverged(assignment.getNumberOfChanges(), strands.size());
+				numberOfIterations--;
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		return centroids;
+	}
+
+}
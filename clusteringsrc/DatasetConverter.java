@@ -0,0 +1,37 @@
+/**
+ * DatasetConverter:
+ * Converts a CSV file written by the data generators into the binary
+ * dataset format (see BinaryDataset).
+ * Usage: java DatasetConverter DataType input.csv output.bin
+ * where DataType is point or dna
+ */
+import java.io.IOException;
+import java.util.List;
+
+
+public class DatasetConverter {
+
+	public static void main(String[] args) throws IOException {
+
+		if(args.length != 3) {
+			System.err.println("Usage: java DatasetConverter <point|dna> <input.csv> <output.bin>");
+			System.exit(1);
+		}
+
+		DataType dataType = DataType.valueOf(args[0]);
+		String inputFileName = args[1];
+		String outputFileName = args[2];
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+		if(dataType == DataType.point) {
+			PointSet points = InputPartitionReader.readPoints(inputFileName, 0, 1, numberOfThreads);
+			BinaryDataset.writePoints(outputFileName, points);
+			System.out.println("Converted " + points.size() + " points to " + outputFileName);
+		} else {
+			List<DNAStrand> strands = InputPartitionReader.readDNAStrands(inputFileName, 0, 1, numberOfThreads);
+			BinaryDataset.writeDNAStrands(outputFileName, strands);
+			System.out.println("Converted " + strands.size() + " DNA strands to " + outputFileName);
+		}
+	}
+
+}
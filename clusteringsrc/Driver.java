@@ -4,15 +4,14 @@
  * - Creates new Driver object
  * - parses command line
  * - Based on the DataType (point / DNA strand) reads 2d points or DNA strands
- * - Based on the mode (sequential / parallel) calls appropriate routines
+ * - Based on the mode (sequential / parallel / collective / threaded / minibatch) calls appropriate routines,
+ *   the parallel and collective ones on every rank of the chosen transport
  * - Prints the final list of k centroids
  */
-import java.io.BufferedReader;
-import mpi.*;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -21,29 +20,70 @@ public class Driver {
 	private int k;
 	private Mode mode;
 	private DataType dataType;
-	private List<Point> points;
+        /* CSV or binary dataset file to read the points / strands from */
+	private String inputFileName;
+        /* optional settings given as --name=value */
+	private ClusteringOptions options = new ClusteringOptions();
+	private PointSet points;
 	private List<DNAStrand> dnaStrands;
 	private static final long startTime = System.nanoTime();
+
+        /* default input files written by the data generators */
+	private static final String POINT_INPUT_FILE = "2D_DataGenerator/cluster.csv";
+	private static final String DNA_INPUT_FILE = "DNA_DataGenerator/cluster.csv";
 	
-	public static void main(String[] args) throws MPIException {
+	public static void main(final String[] args) throws IOException {
 		
-		Driver driver = new Driver();
+		final Driver driver = new Driver();
 		driver.parseCommandLineArgs(args);
 
+                /*
+                In the sequential and threaded modes the whole input is read here. In the parallel
+                modes every process reads only its own part of the input once MPI has been initialized.
+                The minibatch mode samples the input itself.
+                 */
 		if (driver.getDataType() == DataType.point) {
-			driver.read2DPoints();
 			List<Point> finalCentroids = null;
 			if (driver.getMode() == Mode.sequential) {
-				PointSequentialClustering psc = new PointSequentialClustering(driver.getK(), driver.getPoints());
+				driver.read2DPoints();
+				PointSequentialClustering psc = new PointSequentialClustering(driver.getK(), driver.getPoints(), driver.getOptions());
 
 				finalCentroids = psc.performClustering();
 
 				driver.printPointCentroids(finalCentroids);
 
 			} else if (driver.getMode() == Mode.parallel) {
-				PointParallelClustering ppc = new PointParallelClustering(args, driver.getK(), driver.getPoints());
+				finalCentroids = driver.runDistributed(args, new DistributedRun<Point>() {
+					public List<Point> performClustering(Communicator communicator) throws IOException {
+						PointParallelClustering ppc = new PointParallelClustering(communicator, driver.getK(), driver.getInputFileName(), driver.getOptions());
+						return ppc.performClustering();
+					}
+				});
+
+				driver.printPointCentroids(finalCentroids);
+
+			} else if (driver.getMode() == Mode.collective) {
+				finalCentroids = driver.runDistributed(args, new DistributedRun<Point>() {
+					public List<Point> performClustering(Communicator communicator) throws IOException {
+						PointCollectiveClustering pcc = new PointCollectiveClustering(communicator, driver.getK(), driver.getInputFileName(), driver.getOptions());
+						return pcc.performClustering();
+					}
+				});
+
+				driver.printPointCentroids(finalCentroids);
+
+			} else if (driver.getMode() == Mode.threaded) {
+				driver.read2DPoints();
+				PointThreadedClustering ptc = new PointThreadedClustering(driver.getK(), driver.getPoints(), driver.getOptions());
 
-				finalCentroids = ppc.performClustering();
+				finalCentroids = ptc.performClustering();
+
+				driver.printPointCentroids(finalCentroids);
+
+			} else if (driver.getMode() == Mode.minibatch) {
+				PointMiniBatchClustering pmc = new PointMiniBatchClustering(driver.getK(), driver.getInputFileName(), driver.getOptions());
+
+				finalCentroids = pmc.performClustering();
 
 				driver.printPointCentroids(finalCentroids);
 
@@ -52,19 +92,47 @@ public class Driver {
 				System.err.println("Invalid mode");
 			}
 		} else if (driver.getDataType() == DataType.dna) {
-			driver.readDNAStrands();
 			List<DNAStrand> finalCentroids = null;
 			if (driver.getMode() == Mode.sequential) {
-				DNASequentialClustering dsc = new DNASequentialClustering(driver.getK(), driver.getDNAStrands());
+				driver.readDNAStrands();
+				DNASequentialClustering dsc = new DNASequentialClustering(driver.getK(), driver.getDNAStrands(), driver.getOptions());
 
 				finalCentroids = dsc.performClustering();
 
 				driver.printDNACentroids(finalCentroids);
 
 			} else if (driver.getMode() == Mode.parallel) {
-				DNAParallelClustering dpc = new DNAParallelClustering(args, driver.getK(), driver.getDNAStrands());
+				finalCentroids = driver.runDistributed(args, new DistributedRun<DNAStrand>() {
+					public List<DNAStrand> performClustering(Communicator communicator) throws IOException {
+						DNAParallelClustering dpc = new DNAParallelClustering(communicator, driver.getK(), driver.getInputFileName(), driver.getOptions());
+						return dpc.performClustering();
+					}
+				});
 
-				finalCentroids = dpc.performClustering();
+				driver.printDNACentroids(finalCentroids);
+
+			} else if (driver.getMode() == Mode.collective) {
+				finalCentroids = driver.runDistributed(args, new DistributedRun<DNAStrand>() {
+					public List<DNAStrand> performClustering(Communicator communicator) throws IOException {
+						DNACollectiveClustering dcc = new DNACollectiveClustering(communicator, driver.getK(), driver.getInputFileName(), driver.getOptions());
+						return dcc.performClustering();
+					}
+				});
+
+				driver.printDNACentroids(finalCentroids);
+
+			} else if (driver.getMode() == Mode.threaded) {
+				driver.readDNAStrands();
+				DNAThreadedClustering dtc = new DNAThreadedClustering(driver.getK(), driver.getDNAStrands(), driver.getOptions());
+
+				finalCentroids = dtc.performClustering();
+
+				driver.printDNACentroids(finalCentroids);
+
+			} else if (driver.getMode() == Mode.minibatch) {
+				DNAMiniBatchClustering dmc = new DNAMiniBatchClustering(driver.getK(), driver.getInputFileName(), driver.getOptions());
+
+				finalCentroids = dmc.performClustering();
 
 				driver.printDNACentroids(finalCentroids);
 
@@ -78,6 +146,90 @@ public class Driver {
 		}
 	}
 
+        /* one rank of a parallel or collective run, given the communicator of that rank */
+	private interface DistributedRun<T> {
+		List<T> performClustering(Communicator communicator) throws IOException;
+	}
+
+        /**
+         * runDistributed:
+         * run the clustering on every rank of the chosen transport. With mpi this process is
+         * one of the ranks started by mpirun, with socket it is the rank given by --rank of the
+         * host list. With loopback all the ranks run in this process:
+         * rank 0 on this thread, every other rank on a thread of its own.
+         * @param args
+         * @param run
+         * @return the final centroids of rank 0 of this process, null on the other ranks
+         * @throws IOException
+         */
+	private <T> List<T> runDistributed(String[] args, final DistributedRun<T> run) throws IOException {
+		if(options.getTransport() == Transport.mpi) {
+			Communicator communicator = MPICommunicator.init(args);
+			List<T> finalCentroids = run.performClustering(communicator);
+			communicator.close();
+			return finalCentroids;
+		}
+
+		if(options.getTransport() == Transport.socket) {
+			SocketCommunicator communicator = SocketCommunicator.connect(options.getHosts(), options.getRank(), options.getPort());
+			List<T> finalCentroids = null;
+			try {
+				finalCentroids = run.performClustering(communicator);
+			} catch (IOException e) {
+				communicator.abort();
+				throw e;
+			} catch (RuntimeException e) {
+				communicator.abort();
+				throw e;
+			}
+			communicator.close();
+			return finalCentroids;
+		}
+
+		final LoopbackCommunicator[] group = LoopbackCommunicator.createGroup(options.getProcesses());
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int rank = 1; rank < group.length; rank++) {
+			final LoopbackCommunicator communicator = group[rank];
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					try {
+						run.performClustering(communicator);
+						communicator.close();
+					} catch (Throwable e) {
+						failures.add(e);
+						communicator.abort(e);
+					}
+				}
+			}, "rank-" + rank);
+			thread.start();
+			threads.add(thread);
+		}
+
+		List<T> finalCentroids = null;
+		try {
+			finalCentroids = run.performClustering(group[0]);
+			group[0].close();
+		} catch (IOException e) {
+			group[0].abort(e);
+			throw e;
+		} catch (RuntimeException e) {
+			group[0].abort(e);
+			throw e;
+		}
+		for(Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted while waiting for the other ranks", e);
+			}
+		}
+		if(!failures.isEmpty()) {
+			throw new IOException("A rank failed", failures.get(0));
+		}
+		return finalCentroids;
+	}
+
         /**
          * printDNACentroids:
          * Print final DNA centroids
@@ -120,18 +272,12 @@ public class Driver {
 
         /**
          * readDNAStrands:
-         * read from the CSV file
+         * read from the CSV file (parsing it with the configured number of threads)
+         * or the binary dataset file
          */
 	private void readDNAStrands() {
 		try {
-			BufferedReader br = new BufferedReader(new FileReader("DNA_DataGenerator/cluster.csv"));
-			String line;
-			dnaStrands = new ArrayList<DNAStrand>();
-			
-			while ((line = br.readLine()) != null) {
-				DNAStrand strand = new DNAStrand(line);
-				dnaStrands.add(strand);
-			}
+			dnaStrands = InputPartitionReader.readDNAStrands(inputFileName, 0, 1, options.getThreads());
 		} catch (FileNotFoundException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -143,18 +289,12 @@ public class Driver {
 
         /**
          * read2DPoints:
-         * read from the CSV file
+         * read from the CSV file (parsing it with the configured number of threads)
+         * or the binary dataset file
          */
 	private void read2DPoints() {
 		try {
-			BufferedReader br = new BufferedReader(new FileReader("2D_DataGenerator/cluster.csv"));
-			String line;
-			points = new ArrayList<Point>();
-			
-			while ((line = br.readLine()) != null) {
-				Point p = new Point(line);
-				points.add(p);
-			}
+			points = InputPartitionReader.readPoints(inputFileName, 0, 1, options.getThreads());
 		} catch (FileNotFoundException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -172,26 +312,93 @@ public class Driver {
 		return dataType;
 	}
 
+	private String getInputFileName() {
+		return inputFileName;
+	}
+
 	private int getK() {
 		return k;
 	}
 
+	private ClusteringOptions getOptions() {
+		return options;
+	}
+
         /**
          * parseCommandLineArgs:
          * The command line looks like this
-         * mpirun -np x -machinefile machines.txt java -cp $CLASSPATH Driver k mode DataType
+         * mpirun -np x -machinefile machines.txt java -cp $CLASSPATH Driver k mode DataType [inputFile] [--option=value ...]
+         * inputFile is a CSV file or a binary dataset (see DatasetConverter). It defaults to the
+         * cluster.csv written by the generator of the DataType.
+         * Options:
+         *   --assignment=exact|hamerly|elkan  how points / strands are assigned to their nearest
+         *                                     centroid (default exact, see Assignment)
+         *   --seeding=random|kmeansplusplus   how the initial centroids are chosen (default
+         *                                     kmeansplusplus, k-means|| in the MPI modes, see Seeding)
+         *   --maxIterations=N                 upper limit on the number of iterations (default 100)
+         *   --epsilon=E                       2D clustering stops once the centroids moved at most
+         *                                     this far in total in an iteration (default 0)
+         *   --changeThreshold=F               DNA clustering stops once at most this fraction of the
+         *                                     strands changed cluster in an iteration (default 0)
+         *   --patience=N                      the minibatch mode stops instead once N batches in a
+         *                                     row were no nearer to their centroids than the
+         *                                     nearest batch before them (default 10)
+         *   --batchSize=N                     points / strands per batch of the minibatch mode
+         *                                     (default 1024)
+         *   --decay=D                         DNA minibatch multiplies the base counts by this
+         *                                     factor in (0, 1] before every batch, so older batches
+         *                                     weigh less (default 1, nothing is forgotten)
+         *   --threads=N                       number of threads every process computes with, in
+         *                                     all but the sequential mode, and parses the CSV
+         *                                     with (default: number of processors). With MPI,
+         *                                     run one process per node.
+         *   --scheduling=fixed|dynamic        how the parallel mode shares the input among the
+         *                                     participants (default fixed, see Scheduling)
+         *   --chunksPerProcess=N              chunks of the input per participant with dynamic
+         *                                     scheduling (default 8)
+         *   --reduction=direct|tree           how the participants of the parallel mode send their
+         *                                     results to Process-0 (default direct, see Reduction)
+         *   --transport=mpi|loopback|socket   how the ranks of the parallel and collective modes
+         *                                     exchange messages (default mpi, see Transport)
+         *   --processes=N                     number of ranks run as threads of this JVM by the
+         *                                     loopback transport (default 4). Run it without
+         *                                     mpirun: java Driver k mode DataType ... --transport=loopback
+         *   --hosts=FILE                      host list of the socket transport, one rank per line
+         *                                     as host or host:port (default machines.txt)
+         *   --rank=N                          rank of this process with the socket transport, its
+         *                                     line of the host list counting from 0. Start every
+         *                                     rank without mpirun, or all of them with
+         *                                     launchSocketClustering.sh
+         *   --port=P                          port of rank 0 with the socket transport, rank r
+         *                                     listens on P + r (default 7000)
          * @param args
          */
 	private void parseCommandLineArgs(String[] args) {
+		List<String> positional = new ArrayList<String>();
+		for(String arg : args) {
+			if(arg.startsWith("--")) {
+				options.parseOption(arg);
+			} else {
+				positional.add(arg);
+			}
+		}
+		options.validate();
+
                 /* number of clusters */
-		k = Integer.parseInt(args[0]);
-                /* Mode: Sequential / Parallel */
-		mode = Mode.valueOf(args[1]);
+		k = Integer.parseInt(positional.get(0));
+                /* Mode: Sequential / Parallel / Collective / Threaded / Minibatch */
+		mode = Mode.valueOf(positional.get(1));
                 /* DataType: 2D / DNA */
-		dataType = DataType.valueOf(args[2]);
+		dataType = DataType.valueOf(positional.get(2));
+                /* input file: CSV or binary dataset */
+		if(positional.size() > 3) {
+			inputFileName = positional.get(3);
+		} else {
+			inputFileName = (dataType == DataType.point) ? POINT_INPUT_FILE : DNA_INPUT_FILE;
+		}
 	}
 	
-	private List<Point> getPoints() {
+	private PointSet getPoints() {
 		return points;
 	}
 	
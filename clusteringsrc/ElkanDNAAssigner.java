@@ -0,0 +1,115 @@
+/**
+ * ElkanDNAAssigner:
+ * Elkan's accelerated assignment for DNA strands. Every strand keeps an upper
+ * bound on the distance to its own centroid and a separate lower bound on the
+ * distance to every other centroid; together with the distances between the
+ * centroids this rules out most candidate centroids one by one. Needs n * k
+ * ints of extra memory.
+ */
+import java.util.List;
+
+
+public class ElkanDNAAssigner extends BoundedDNAAssigner {
+
+        /*
+        lower[s * k + c] - totalDrift[c]: lower bound on the distance from strand s to centroid c.
+        Storing the bounds offset by the total drift of their centroid means that changing the
+        centroids does not touch the n * k bounds at all.
+         */
+	private int[] lower;
+	private int[] totalDrift;
+	private int k;
+
+	public ElkanDNAAssigner(List<DNAStrand> strands) {
+		super(strands);
+	}
+
+	@Override
+	protected void initialize(List<DNAStrand> centroids) {
+		k = centroids.size();
+		nearest = new int[strands.size()];
+		upper = new int[strands.size()];
+		lower = new int[strands.size() * k];
+		totalDrift = new int[k];
+
+		for(int s = 0; s < strands.size(); s++) {
+
+			DNAStrand dna = strands.get(s);
+			int minDistance = Integer.MAX_VALUE;
+			int centroidIndex = -1;
+
+			for(int c = 0; c < k; c++) {
+				int distance = dna.distance(centroids.get(c));
+				lower[s * k + c] = distance;
+				if(distance < minDistance) {
+					minDistance = distance;
+					centroidIndex = c;
+				}
+			}
+
+			nearest[s] = centroidIndex;
+			upper[s] = minDistance;
+		}
+	}
+
+	@Override
+	protected void update(List<DNAStrand> centroids, int[] drift) {
+
+		int[] distances = centroidDistances(centroids);
+		int[] nearestCentroid = new int[k];
+		for(int c1 = 0; c1 < k; c1++) {
+			nearestCentroid[c1] = Integer.MAX_VALUE;
+			for(int c2 = 0; c2 < k; c2++) {
+				if(c2 != c1) {
+					nearestCentroid[c1] = Math.min(nearestCentroid[c1], distances[c1 * k + c2]);
+				}
+			}
+		}
+		for(int c = 0; c < k; c++) {
+			totalDrift[c] += drift[c];
+		}
+
+		for(int s = 0; s < strands.size(); s++) {
+
+			int base = s * k;
+			int a = nearest[s];
+			int u = upper[s] + drift[a];
+			if(2L * u < nearestCentroid[a]) {
+				upper[s] = u;
+				continue;
+			}
+
+			DNAStrand dna = strands.get(s);
+			boolean tight = false;
+
+			for(int c = 0; c < k; c++) {
+
+				if(c == a || 2L * u < distances[a * k + c] || u < lower[base + c] - totalDrift[c]) {
+					continue;
+				}
+				if(!tight) {
+                                        /* tighten the upper bound before comparing with any other centroid */
+					u = dna.distance(centroids.get(a));
+					lower[base + a] = u + totalDrift[a];
+					tight = true;
+					if(2L * u < distances[a * k + c] || u < lower[base + c] - totalDrift[c]) {
+						continue;
+					}
+				}
+
+                                /* counting stops once c cannot win, the partial count is still a lower bound */
+				int distance = dna.distance(centroids.get(c), u + 1);
+				lower[base + c] = distance + totalDrift[c];
+                                /* on a tie the lower index wins, as in the exact assignment */
+				if(distance < u || (distance == u && c < a)) {
+					a = c;
+					u = distance;
+				}
+			}
+
+			nearest[s] = a;
+			upper[s] = u;
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ * ElkanPointAssigner:
+ * Elkan's accelerated assignment. Every point keeps an upper bound on the
+ * distance to its own centroid and a separate lower bound on the distance to
+ * every other centroid; together with the distances between the centroids
+ * this rules out nearly all candidate centroids one by one. It skips more
+ * distance computations than HamerlyPointAssigner but needs n * k doubles
+ * of extra memory.
+ */
+public class ElkanPointAssigner extends BoundedPointAssigner {
+
+        /*
+        lower[i * k + c] - totalDrift[c]: lower bound on the distance from point i to centroid c.
+        Storing the bounds offset by the total drift of their centroid means that moving the
+        centroids does not touch the n * k bounds at all.
+         */
+	private double[] lower;
+	private double[] totalDrift;
+	private int k;
+
+	public ElkanPointAssigner(PointSet points, int from, int to) {
+		super(points, from, to);
+	}
+
+	@Override
+	protected void initialize(double[] cx, double[] cy) {
+		k = cx.length;
+		nearest = new int[size];
+		upper = new double[size];
+		lower = new double[size * k];
+		totalDrift = new double[k];
+
+		for(int i = 0; i < size; i++) {
+
+			double x = x(i);
+			double y = y(i);
+			double minDistance = Double.MAX_VALUE;
+			int centroidIndex = -1;
+
+			for(int c = 0; c < k; c++) {
+				double distance = distance(x, y, cx[c], cy[c]);
+				lower[i * k + c] = distance;
+				if(distance < minDistance) {
+					minDistance = distance;
+					centroidIndex = c;
+				}
+			}
+
+			nearest[i] = centroidIndex;
+			upper[i] = minDistance;
+		}
+	}
+
+	@Override
+	protected void update(double[] cx, double[] cy, double[] drift) {
+
+                /* half the distances between all the centroids, and from every centroid to its nearest other one */
+		double[] half = new double[k * k];
+		double[] halfNearest = new double[k];
+		for(int c = 0; c < k; c++) {
+			halfNearest[c] = Double.MAX_VALUE;
+		}
+		for(int c1 = 0; c1 < k; c1++) {
+			for(int c2 = c1 + 1; c2 < k; c2++) {
+				double h = halfCentroidDistance(cx, cy, c1, c2);
+				half[c1 * k + c2] = h;
+				half[c2 * k + c1] = h;
+				halfNearest[c1] = Math.min(halfNearest[c1], h);
+				halfNearest[c2] = Math.min(halfNearest[c2], h);
+			}
+		}
+
+		for(int c = 0; c < k; c++) {
+			totalDrift[c] += drift[c];
+		}
+
+		for(int i = 0; i < size; i++) {
+
+			int base = i * k;
+			int a = nearest[i];
+			double u = loosenUpper(upper[i], drift[a]);
+			if(u < halfNearest[a]) {
+				upper[i] = u;
+				continue;
+			}
+
+			double x = x(i);
+			double y = y(i);
+			boolean tight = false;
+
+			for(int c = 0; c < k; c++) {
+
+				if(c == a || u < half[a * k + c] || u < lowerBound(base, c)) {
+					continue;
+				}
+				if(!tight) {
+                                        /* tighten the upper bound before computing any other distance */
+					u = distance(x, y, cx[a], cy[a]);
+					lower[base + a] = u + totalDrift[a];
+					tight = true;
+					if(u < half[a * k + c] || u < lowerBound(base, c)) {
+						continue;
+					}
+				}
+
+				double distance = distance(x, y, cx[c], cy[c]);
+				lower[base + c] = distance + totalDrift[c];
+                                /* on a tie the lower index wins, as in the exact assignment */
+				if(distance < u || (distance == u && c < a)) {
+					a = c;
+					u = distance;
+				}
+			}
+
+			nearest[i] = a;
+			upper[i] = u;
+		}
+	}
+
+        /* lower bound on the distance from the point at base / k to centroid c */
+	private double lowerBound(int base, int c) {
+		double stored = lower[base + c];
+		return stored - totalDrift[c] - ROUNDING * (stored + totalDrift[c]);
+	}
+
+}
@@ -0,0 +1,46 @@
+/**
+ * ExactDNAAssigner:
+ * Compares every strand with every centroid. Counting stops as soon as a
+ * centroid can no longer beat the nearest one found so far.
+ */
+import java.util.List;
+
+
+public class ExactDNAAssigner extends DNAAssigner {
+
+	public ExactDNAAssigner(List<DNAStrand> strands) {
+		super(strands);
+	}
+
+	@Override
+	public int assign(List<DNAStrand> centroids, int[] assignments) {
+
+		int changes = 0;
+
+		for(int s = 0; s < strands.size(); s++) {
+
+			DNAStrand dna = strands.get(s);
+			int minDistance = Integer.MAX_VALUE;
+			int centroidIndex = -1;
+
+			for(int c = 0; c < centroids.size(); c++) {
+
+				int distance = dna.distance(centroids.get(c), minDistance);
+
+				if(distance < minDistance) {
+					minDistance = distance;
+					centroidIndex = c;
+				}
+
+			}
+
+			if(assignments[s] != centroidIndex) {
+				assignments[s] = centroidIndex;
+				changes++;
+			}
+
+		}
+		return changes;
+	}
+
+}
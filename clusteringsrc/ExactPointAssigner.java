@@ -0,0 +1,42 @@
+/**
+ * ExactPointAssigner:
+ * Computes the distance from every point to every centroid.
+ */
+import java.util.List;
+
+
+public class ExactPointAssigner extends PointAssigner {
+
+	public ExactPointAssigner(PointSet points, int from, int to) {
+		super(points, from, to);
+	}
+
+	@Override
+	public void assign(List<Point> centroids, int[] assignments) {
+		double[] cx = xs(centroids);
+		double[] cy = ys(centroids);
+
+		for(int i = 0; i < size; i++) {
+
+			double x = x(i);
+			double y = y(i);
+			double minDistance = Double.MAX_VALUE;
+			int centroidIndex = -1;
+
+			for(int c = 0; c < cx.length; c++) {
+
+				double distance = distance(x, y, cx[c], cy[c]);
+
+				if(distance < minDistance) {
+					minDistance = distance;
+					centroidIndex = c;
+				}
+
+			}
+
+			assignments[i] = centroidIndex;
+
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+/**
+ * ForkJoinDNAAssignment:
+ * Runs the assignment step and the base counting of a list of DNA strands on
+ * a ForkJoinPool. The strands are split into a fixed set of chunks, a few per
+ * thread so that the pool can balance the load. Every chunk has its own
+ * DNAAssigner (and therefore its own distance bounds) and its own assignment
+ * array. The base counts of all the strands live in a single DNABaseCounts
+ * that is kept from one call to the next: once the chunks are assigned, only
+ * the strands that changed cluster since they were counted are moved, the
+ * threads sharing the positions of the strands between them so that no two
+ * of them touch the same counts. The number of strands that changed cluster
+ * is counted as well.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+public class ForkJoinDNAAssignment {
+
+	private static final int CHUNKS_PER_THREAD = 4;
+        /* fewest positions moved by one task, fewer are not worth walking the changed strands for */
+	private static final int MINIMUM_POSITIONS_PER_TASK = 16;
+
+	private ForkJoinPool pool;
+	private int strandLength;
+	private List<List<DNAStrand>> chunks;
+	private DNAAssigner[] assigners;
+	private int[][] assignments;
+        /* number of strands of every chunk that changed cluster in the last call */
+	private int[] changes;
+        /* the base counts of all the strands, and the assignments every chunk was counted with */
+	private DNABaseCounts baseCounts = null;
+	private int[][] countedAssignments;
+        /* the strands of every chunk (by position in the chunk) whose counted assignment is out of date */
+	private int[][] recounts;
+	private int[] numberOfRecounts;
+	private int positionsPerTask;
+
+        /**
+         * Constructor
+         * @param strands
+         * @param strandLength
+         * @param assignment: kind of assigner used for every chunk
+         * @param pool: the pool the work runs on, its parallelism decides the number of chunks
+         */
+	public ForkJoinDNAAssignment(List<DNAStrand> strands, int strandLength, Assignment assignment, ForkJoinPool pool) {
+		this.strandLength = strandLength;
+		this.pool = pool;
+
+		int numberOfChunks = Math.max(1, Math.min(strands.size(), pool.getParallelism() * CHUNKS_PER_THREAD));
+                /* chunk c holds the strands [chunkStart[c], chunkStart[c + 1]) */
+		int[] chunkStart = new int[numberOfChunks + 1];
+		chunks = new ArrayList<List<DNAStrand>>(numberOfChunks);
+		assigners = new DNAAssigner[numberOfChunks];
+		assignments = new int[numberOfChunks][];
+		changes = new int[numberOfChunks];
+		countedAssignments = new int[numberOfChunks][];
+		recounts = new int[numberOfChunks][];
+		numberOfRecounts = new int[numberOfChunks];
+		for(int c = 0; c < numberOfChunks; c++) {
+			chunkStart[c + 1] = (int) ((long) strands.size() * (c + 1) / numberOfChunks);
+			chunks.add(strands.subList(chunkStart[c], chunkStart[c + 1]));
+			assigners[c] = DNAAssigner.create(assignment, chunks.get(c));
+			assignments[c] = new int[chunks.get(c).size()];
+                        /* no strand is assigned yet, so the first call changes all of them */
+			Arrays.fill(assignments[c], -1);
+			countedAssignments[c] = assignments[c].clone();
+			recounts[c] = new int[chunks.get(c).size()];
+		}
+		positionsPerTask = Math.max(MINIMUM_POSITIONS_PER_TASK,
+				(strandLength + pool.getParallelism() * CHUNKS_PER_THREAD - 1) / (pool.getParallelism() * CHUNKS_PER_THREAD));
+	}
+
+        /**
+         * computeBaseCounts:
+         * assign every strand to its nearest centroid and count its bases for that cluster.
+         * The counts are moved from the previous call, which costs O(changes * length).
+         * @param centroids
+         * @return the counts of all the strands, kept by this object and updated by the next call
+         */
+	public DNABaseCounts computeBaseCounts(List<DNAStrand> centroids) {
+		if(baseCounts == null) {
+			baseCounts = new DNABaseCounts(centroids.size(), strandLength);
+		}
+		countChanges(centroids, baseCounts);
+		return baseCounts;
+	}
+
+        /**
+         * countChanges:
+         * assign every strand to its nearest centroid, and move the bases of every strand whose
+         * cluster differs from the one it was last counted for, from that cluster to its new one.
+         * Given counts that start at 0, this leaves only the changes since the last call in them.
+         * @param centroids
+         * @param counts: the counts to move the strands in, of the same strands on every call
+         */
+	public void countChanges(List<DNAStrand> centroids, DNABaseCounts counts) {
+		pool.invoke(new AssignTask(centroids, 0, chunks.size()));
+		pool.invoke(new MoveBasesTask(counts, 0, strandLength));
+		for(int c = 0; c < chunks.size(); c++) {
+			for(int i = 0; i < numberOfRecounts[c]; i++) {
+				int s = recounts[c][i];
+				counts.moveStrand(countedAssignments[c][s], assignments[c][s]);
+				countedAssignments[c][s] = assignments[c][s];
+			}
+		}
+	}
+
+        /**
+         * uncount:
+         * take the bases of every counted strand back out of counts, e.g. before the strands
+         * are given up. The strands count as not counted yet from then on.
+         * @param counts
+         */
+	public void uncount(DNABaseCounts counts) {
+		for(int c = 0; c < chunks.size(); c++) {
+			List<DNAStrand> chunk = chunks.get(c);
+			int[] counted = countedAssignments[c];
+			for(int s = 0; s < counted.length; s++) {
+				if(counted[s] >= 0) {
+					counts.moveBases(chunk.get(s), counted[s], -1, 0, strandLength);
+					counts.moveStrand(counted[s], -1);
+					counted[s] = -1;
+				}
+			}
+		}
+	}
+
+        /**
+         * getNumberOfChanges:
+         * @return the number of strands that changed cluster in the last call of countChanges or
+         * computeBaseCounts
+         */
+	public int getNumberOfChanges() {
+		int total = 0;
+		for(int c = 0; c < changes.length; c++) {
+			total += changes[c];
+		}
+		return total;
+	}
+
+        /**
+         * AssignTask:
+         * assigns the chunks [fromChunk, toChunk) and lists the strands whose bases have to be moved
+         */
+	private class AssignTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private List<DNAStrand> centroids;
+		private int fromChunk;
+		private int toChunk;
+
+		AssignTask(List<DNAStrand> centroids, int fromChunk, int toChunk) {
+			this.centroids = centroids;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if(toChunk - fromChunk == 1) {
+				int[] chunkAssignments = assignments[fromChunk];
+				changes[fromChunk] = assigners[fromChunk].assign(centroids, chunkAssignments);
+				int[] counted = countedAssignments[fromChunk];
+				int m = 0;
+				for(int s = 0; s < chunkAssignments.length; s++) {
+					if(counted[s] != chunkAssignments[s]) {
+						recounts[fromChunk][m++] = s;
+					}
+				}
+				numberOfRecounts[fromChunk] = m;
+				return;
+			}
+			int middle = (fromChunk + toChunk) >>> 1;
+			invokeAll(new AssignTask(centroids, fromChunk, middle),
+					new AssignTask(centroids, middle, toChunk));
+		}
+	}
+
+        /**
+         * MoveBasesTask:
+         * moves the bases at the positions [fromPosition, toPosition) of the strands listed in
+         * recounts, splitting the range in halves. Tasks with different positions never touch
+         * the same counts.
+         */
+	private class MoveBasesTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private DNABaseCounts counts;
+		private int fromPosition;
+		private int toPosition;
+
+		MoveBasesTask(DNABaseCounts counts, int fromPosition, int toPosition) {
+			this.counts = counts;
+			this.fromPosition = fromPosition;
+			this.toPosition = toPosition;
+		}
+
+		@Override
+		protected void compute() {
+			if(toPosition - fromPosition <= positionsPerTask) {
+				for(int c = 0; c < chunks.size(); c++) {
+					List<DNAStrand> chunk = chunks.get(c);
+					for(int i = 0; i < numberOfRecounts[c]; i++) {
+						int s = recounts[c][i];
+						counts.moveBases(chunk.get(s), countedAssignments[c][s], assignments[c][s], fromPosition, toPosition);
+					}
+				}
+				return;
+			}
+			int middle = (fromPosition + toPosition) >>> 1;
+			invokeAll(new MoveBasesTask(counts, fromPosition, middle),
+					new MoveBasesTask(counts, middle, toPosition));
+		}
+	}
+
+}
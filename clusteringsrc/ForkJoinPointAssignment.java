@@ -0,0 +1,100 @@
+/**
+ * ForkJoinPointAssignment:
+ * Runs the assignment step and the accumulation of the per-cluster sums of a
+ * PointSet on a ForkJoinPool. The points are split into a fixed set of
+ * chunks, a few per thread so that the pool can balance the load. Every chunk
+ * has its own PointAssigner (and therefore its own distance bounds) and its
+ * own assignment array, and accumulates its own partial PointClusterSums. The
+ * partial sums are merged pairwise while the fork/join tasks return, always
+ * in the same order, so a run is repeatable for a given number of chunks.
+ */
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+public class ForkJoinPointAssignment {
+
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private ForkJoinPool pool;
+	private PointSet points;
+        /* chunk c holds the points [chunkStart[c], chunkStart[c + 1]) */
+	private int[] chunkStart;
+	private PointAssigner[] assigners;
+	private int[][] assignments;
+
+        /**
+         * Constructor
+         * @param points
+         * @param assignment: kind of assigner used for every chunk
+         * @param pool: the pool the work runs on, its parallelism decides the number of chunks
+         */
+	public ForkJoinPointAssignment(PointSet points, Assignment assignment, ForkJoinPool pool) {
+		this.points = points;
+		this.pool = pool;
+
+		int numberOfChunks = Math.max(1, Math.min(points.size(), pool.getParallelism() * CHUNKS_PER_THREAD));
+		chunkStart = new int[numberOfChunks + 1];
+		assigners = new PointAssigner[numberOfChunks];
+		assignments = new int[numberOfChunks][];
+		for(int c = 0; c < numberOfChunks; c++) {
+			chunkStart[c + 1] = (int) ((long) points.size() * (c + 1) / numberOfChunks);
+			assigners[c] = PointAssigner.create(assignment, points, chunkStart[c], chunkStart[c + 1]);
+			assignments[c] = new int[chunkStart[c + 1] - chunkStart[c]];
+		}
+	}
+
+        /**
+         * computeClusterSums:
+         * assign every point to its nearest centroid and accumulate the per-cluster sums
+         * @param centroids
+         * @return
+         */
+	public PointClusterSums computeClusterSums(List<Point> centroids) {
+		return pool.invoke(new ClusterSumsTask(centroids, 0, assigners.length));
+	}
+
+        /* assigns and sums up the chunks [fromChunk, toChunk), splitting the range in halves */
+	private class ClusterSumsTask extends RecursiveTask<PointClusterSums> {
+
+		private static final long serialVersionUID = 1L;
+
+		private List<Point> centroids;
+		private int fromChunk;
+		private int toChunk;
+
+		ClusterSumsTask(List<Point> centroids, int fromChunk, int toChunk) {
+			this.centroids = centroids;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected PointClusterSums compute() {
+			if(toChunk - fromChunk == 1) {
+				return computeChunk(fromChunk);
+			}
+			int middle = (fromChunk + toChunk) >>> 1;
+			ClusterSumsTask left = new ClusterSumsTask(centroids, fromChunk, middle);
+			left.fork();
+			PointClusterSums sums = new ClusterSumsTask(centroids, middle, toChunk).compute();
+			PointClusterSums leftSums = left.join();
+			leftSums.merge(sums);
+			return leftSums;
+		}
+
+		private PointClusterSums computeChunk(int chunk) {
+			PointClusterSums sums = new PointClusterSums(centroids.size());
+			int[] chunkAssignments = assignments[chunk];
+			int start = chunkStart[chunk];
+
+			assigners[chunk].assign(centroids, chunkAssignments);
+			for(int i = 0; i < chunkAssignments.length; i++) {
+				sums.add(chunkAssignments[i], points.getX(start + i), points.getY(start + i));
+			}
+			return sums;
+		}
+	}
+
+}
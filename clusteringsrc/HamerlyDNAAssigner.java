@@ -0,0 +1,107 @@
+/**
+ * HamerlyDNAAssigner:
+ * Hamerly's accelerated assignment for DNA strands. Every strand keeps one
+ * upper bound on the distance to its own centroid and one lower bound on the
+ * distance to any other centroid. A strand is only compared again when its
+ * upper bound reaches the lower bound or half the distance from its centroid
+ * to the nearest other centroid. Needs O(n) extra memory.
+ */
+import java.util.List;
+
+
+public class HamerlyDNAAssigner extends BoundedDNAAssigner {
+
+        /* lower bound on the distance from every strand to its second nearest centroid */
+	private int[] lower;
+
+	public HamerlyDNAAssigner(List<DNAStrand> strands) {
+		super(strands);
+	}
+
+	@Override
+	protected void initialize(List<DNAStrand> centroids) {
+		nearest = new int[strands.size()];
+		upper = new int[strands.size()];
+		lower = new int[strands.size()];
+
+		for(int s = 0; s < strands.size(); s++) {
+			scan(s, centroids);
+		}
+	}
+
+	@Override
+	protected void update(List<DNAStrand> centroids, int[] drift) {
+		int k = centroids.size();
+
+                /* the largest and second largest drift, lower bounds shrink by the largest drift of another centroid */
+		int maxIndex = 0;
+		int maxDrift = 0;
+		int secondDrift = 0;
+		for(int c = 0; c < k; c++) {
+			if(drift[c] > maxDrift) {
+				secondDrift = maxDrift;
+				maxDrift = drift[c];
+				maxIndex = c;
+			} else if(drift[c] > secondDrift) {
+				secondDrift = drift[c];
+			}
+		}
+
+                /* distance from every centroid to its nearest other centroid */
+		int[] distances = centroidDistances(centroids);
+		int[] nearestCentroid = new int[k];
+		for(int c1 = 0; c1 < k; c1++) {
+			nearestCentroid[c1] = Integer.MAX_VALUE;
+			for(int c2 = 0; c2 < k; c2++) {
+				if(c2 != c1) {
+					nearestCentroid[c1] = Math.min(nearestCentroid[c1], distances[c1 * k + c2]);
+				}
+			}
+		}
+
+		for(int s = 0; s < strands.size(); s++) {
+
+			int a = nearest[s];
+			upper[s] += drift[a];
+			lower[s] -= (a == maxIndex) ? secondDrift : maxDrift;
+
+                        /* 2 * upper < nearestCentroid: the strand is closer to a than half way to any other centroid */
+			if(upper[s] < lower[s] || 2L * upper[s] < nearestCentroid[a]) {
+				continue;
+			}
+
+                        /* tighten the upper bound and try again before looking at all the centroids */
+			upper[s] = strands.get(s).distance(centroids.get(a));
+			if(upper[s] < lower[s] || 2L * upper[s] < nearestCentroid[a]) {
+				continue;
+			}
+
+			scan(s, centroids);
+		}
+	}
+
+        /* compare with all the centroids, keep the nearest and a lower bound on the second nearest */
+	private void scan(int s, List<DNAStrand> centroids) {
+		DNAStrand dna = strands.get(s);
+		int minDistance = Integer.MAX_VALUE;
+		int secondDistance = Integer.MAX_VALUE;
+		int centroidIndex = -1;
+
+		for(int c = 0; c < centroids.size(); c++) {
+                        /* counting stops at secondDistance, the partial count is still a lower bound */
+			int distance = dna.distance(centroids.get(c), secondDistance);
+			if(distance < minDistance) {
+				secondDistance = minDistance;
+				minDistance = distance;
+				centroidIndex = c;
+			} else if(distance < secondDistance) {
+				secondDistance = distance;
+			}
+		}
+
+		nearest[s] = centroidIndex;
+		upper[s] = minDistance;
+		lower[s] = secondDistance;
+	}
+
+}
@@ -0,0 +1,218 @@
+/**
+ * HamerlyPointAssigner:
+ * Hamerly's accelerated assignment. Every point keeps one upper bound on the
+ * distance to its own centroid and one lower bound on the distance to any
+ * other centroid. A point is only looked at again when its upper bound reaches
+ * the lower bound or half the distance from its centroid to the nearest other
+ * centroid. Needs O(n) extra memory.
+ * When a point does have to be looked at again, only the centroids in an
+ * annulus around the origin are considered (Drake and Hamerly's annular
+ * variant): the two nearest centroids are within some radius r of the point,
+ * so their distance from the origin differs from the point's by at most r.
+ * With the centroids sorted by their distance from the origin that annulus
+ * is found with two binary searches.
+ */
+import java.util.Arrays;
+import java.util.Comparator;
+
+
+public class HamerlyPointAssigner extends BoundedPointAssigner {
+
+        /* lower bound on the distance from every point to its second nearest centroid */
+	private double[] lower;
+        /* index of the second nearest centroid of every point, as of its last scan */
+	private int[] secondNearest;
+        /* centroid distances from the origin in ascending order, and the centroid indices in the same order */
+	private double[] sortedNorms;
+	private int[] sortedIndices;
+
+	public HamerlyPointAssigner(PointSet points, int from, int to) {
+		super(points, from, to);
+	}
+
+	@Override
+	protected void initialize(double[] cx, double[] cy) {
+		nearest = new int[size];
+		secondNearest = new int[size];
+		upper = new double[size];
+		lower = new double[size];
+
+		for(int i = 0; i < size; i++) {
+
+			double x = x(i);
+			double y = y(i);
+			double minDistance = Double.MAX_VALUE;
+			double secondDistance = Double.MAX_VALUE;
+			int centroidIndex = -1;
+			int secondIndex = -1;
+
+			for(int c = 0; c < cx.length; c++) {
+				double distance = distance(x, y, cx[c], cy[c]);
+				if(distance < minDistance) {
+					secondDistance = minDistance;
+					secondIndex = centroidIndex;
+					minDistance = distance;
+					centroidIndex = c;
+				} else if(distance < secondDistance) {
+					secondDistance = distance;
+					secondIndex = c;
+				}
+			}
+
+			nearest[i] = centroidIndex;
+			secondNearest[i] = secondIndex;
+			upper[i] = minDistance;
+			lower[i] = secondDistance;
+		}
+	}
+
+	@Override
+	protected void update(double[] cx, double[] cy, double[] drift) {
+		int k = cx.length;
+
+                /* the largest and second largest drift, lower bounds shrink by the largest drift of another centroid */
+		int maxIndex = 0;
+		double maxDrift = 0;
+		double secondDrift = 0;
+		for(int c = 0; c < k; c++) {
+			if(drift[c] > maxDrift) {
+				secondDrift = maxDrift;
+				maxDrift = drift[c];
+				maxIndex = c;
+			} else if(drift[c] > secondDrift) {
+				secondDrift = drift[c];
+			}
+		}
+
+                /* half the distance from every centroid to its nearest other centroid */
+		double[] halfNearest = new double[k];
+		for(int c = 0; c < k; c++) {
+			halfNearest[c] = Double.MAX_VALUE;
+		}
+		for(int c1 = 0; c1 < k; c1++) {
+			for(int c2 = c1 + 1; c2 < k; c2++) {
+				double half = halfCentroidDistance(cx, cy, c1, c2);
+				halfNearest[c1] = Math.min(halfNearest[c1], half);
+				halfNearest[c2] = Math.min(halfNearest[c2], half);
+			}
+		}
+
+		sortCentroidsByNorm(cx, cy);
+
+		for(int i = 0; i < size; i++) {
+
+			int a = nearest[i];
+			upper[i] = loosenUpper(upper[i], drift[a]);
+			lower[i] = loosenLower(lower[i], a == maxIndex ? secondDrift : maxDrift);
+
+			double bound = Math.max(halfNearest[a], lower[i]);
+			if(upper[i] < bound) {
+				continue;
+			}
+
+                        /* tighten the upper bound and try again before looking at the other centroids */
+			double x = x(i);
+			double y = y(i);
+			upper[i] = distance(x, y, cx[a], cy[a]);
+			if(upper[i] < bound) {
+				continue;
+			}
+
+			scanAnnulus(i, x, y, cx, cy);
+		}
+	}
+
+	private void sortCentroidsByNorm(double[] cx, double[] cy) {
+		int k = cx.length;
+		long[] keys = new long[k];
+		double[] norms = new double[k];
+		for(int c = 0; c < k; c++) {
+			norms[c] = distance(0, 0, cx[c], cy[c]);
+                        /* norms are non-negative, so their bit patterns sort like the values */
+			keys[c] = Double.doubleToLongBits(norms[c]);
+		}
+
+		Integer[] order = new Integer[k];
+		for(int c = 0; c < k; c++) {
+			order[c] = c;
+		}
+		final long[] sortKeys = keys;
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer c1, Integer c2) {
+				return Long.compare(sortKeys[c1], sortKeys[c2]);
+			}
+		});
+
+		sortedNorms = new double[k];
+		sortedIndices = new int[k];
+		for(int s = 0; s < k; s++) {
+			sortedIndices[s] = order[s];
+			sortedNorms[s] = norms[order[s]];
+		}
+	}
+
+        /**
+         * scanAnnulus:
+         * find the nearest and second nearest centroid of point i among the centroids whose
+         * distance from the origin is within r of the point's, where r is the larger of the
+         * distances to the current nearest and second nearest centroid. Every centroid
+         * outside the annulus is farther away than both, so the result is the same as
+         * scanning all the centroids.
+         */
+	private void scanAnnulus(int i, double x, double y, double[] cx, double[] cy) {
+		int b = secondNearest[i];
+		double radius = upper[i];
+		if(b >= 0) {
+			radius = Math.max(radius, distance(x, y, cx[b], cy[b]));
+		} else {
+			radius = Double.MAX_VALUE;
+		}
+		double norm = distance(0, 0, x, y);
+		radius += ROUNDING * (radius + norm);
+
+		int from = firstNormAtLeast(norm - radius);
+		int to = firstNormAtLeast(Math.nextUp(norm + radius));
+
+		double minDistance = Double.MAX_VALUE;
+		double secondDistance = Double.MAX_VALUE;
+		int centroidIndex = -1;
+		int secondIndex = -1;
+
+		for(int s = from; s < to; s++) {
+			int c = sortedIndices[s];
+			double distance = distance(x, y, cx[c], cy[c]);
+                        /* the annulus is visited in norm order, on a tie the lower index wins as in the exact assignment */
+			if(distance < minDistance || (distance == minDistance && c < centroidIndex)) {
+				secondDistance = minDistance;
+				secondIndex = centroidIndex;
+				minDistance = distance;
+				centroidIndex = c;
+			} else if(distance < secondDistance) {
+				secondDistance = distance;
+				secondIndex = c;
+			}
+		}
+
+                /* both old neighbours lie inside the annulus, so the second nearest centroid was found too */
+		nearest[i] = centroidIndex;
+		secondNearest[i] = secondIndex;
+		upper[i] = minDistance;
+		lower[i] = secondDistance;
+	}
+
+        /* index of the first entry of sortedNorms that is >= value */
+	private int firstNormAtLeast(double value) {
+		int low = 0;
+		int high = sortedNorms.length;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(sortedNorms[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+}
@@ -0,0 +1,436 @@
+/**
+ * InputPartitionReader:
+ * Reads one partition of a CSV input file. The file is divided into
+ * numberOfParts byte ranges of (nearly) equal size. A line belongs to the
+ * partition in which its first byte lies, so every line is read by exactly
+ * one partition even though the byte ranges do not fall on line boundaries.
+ * This lets every MPI process read only its own share of the input.
+ *
+ * The partition is memory-mapped and parsed straight from the mapped bytes:
+ * co-ordinates are converted to doubles and DNA bases to their ordinals
+ * without creating a String per line or per field. A partition can further
+ * be split into line-aligned pieces that are parsed by several threads.
+ *
+ * Files in the binary dataset format (see BinaryDataset) are recognised by
+ * their header and read without any parsing.
+ */
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+public class InputPartitionReader {
+
+        /* a single mapping is limited to 2GB, larger partitions are mapped piece by piece */
+	private static final long MAX_PIECE_SIZE = 1L << 30;
+
+        /* powers of ten that are exactly representable as doubles */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+        /* largest integer up to which every integer is exactly representable as a double */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+        /* maps a base letter to its DNABase ordinal, -1 for any other byte */
+	private static final byte[] BASE_ORDINALS = new byte[256];
+	static {
+		Arrays.fill(BASE_ORDINALS, (byte) -1);
+		for(DNABase base : DNABase.values()) {
+			BASE_ORDINALS[base.name().charAt(0)] = (byte) base.ordinal();
+		}
+	}
+
+        /**
+         * readPoints:
+         * read the 2D points of one partition of a CSV file
+         * @param fileName
+         * @param partIndex: 0 based index of the partition to read
+         * @param numberOfParts
+         * @return
+         * @throws IOException
+         */
+	public static PointSet readPoints(String fileName, int partIndex, int numberOfParts) throws IOException {
+		return readPoints(fileName, partIndex, numberOfParts, 1);
+	}
+
+        /**
+         * readPoints:
+         * read the 2D points of one partition of a CSV file using numberOfThreads threads
+         * @param fileName
+         * @param partIndex
+         * @param numberOfParts
+         * @param numberOfThreads
+         * @return
+         * @throws IOException
+         */
+	public static PointSet readPoints(String fileName, int partIndex, int numberOfParts, int numberOfThreads) throws IOException {
+		if(BinaryDataset.isBinaryDataset(fileName)) {
+			return BinaryDataset.readPoints(fileName, partIndex, numberOfParts);
+		}
+
+		List<PointSet> pieces = parsePieces(fileName, partIndex, numberOfParts, numberOfThreads, new PieceParserFactory<PointSet>() {
+			public Callable<PointSet> create(FileChannel channel, long start, long end) {
+				return new PointPieceParser(channel, start, end);
+			}
+		});
+
+		if(pieces.size() == 1) {
+			return pieces.get(0);
+		}
+		int numberOfPoints = 0;
+		for(PointSet piece : pieces) {
+			numberOfPoints += piece.size();
+		}
+		PointSet points = new PointSet(numberOfPoints);
+		for(PointSet piece : pieces) {
+			points.addAll(piece);
+		}
+		return points;
+	}
+
+        /**
+         * readDNAStrands:
+         * read the DNA strands of one partition of a CSV file
+         * @param fileName
+         * @param partIndex: 0 based index of the partition to read
+         * @param numberOfParts
+         * @return
+         * @throws IOException
+         */
+	public static List<DNAStrand> readDNAStrands(String fileName, int partIndex, int numberOfParts) throws IOException {
+		return readDNAStrands(fileName, partIndex, numberOfParts, 1);
+	}
+
+        /**
+         * readDNAStrands:
+         * read the DNA strands of one partition of a CSV file using numberOfThreads threads
+         * @param fileName
+         * @param partIndex
+         * @param numberOfParts
+         * @param numberOfThreads
+         * @return
+         * @throws IOException
+         */
+	public static List<DNAStrand> readDNAStrands(String fileName, int partIndex, int numberOfParts, int numberOfThreads) throws IOException {
+		if(BinaryDataset.isBinaryDataset(fileName)) {
+			return BinaryDataset.readDNAStrands(fileName, partIndex, numberOfParts);
+		}
+
+		List<List<DNAStrand>> pieces = parsePieces(fileName, partIndex, numberOfParts, numberOfThreads, new PieceParserFactory<List<DNAStrand>>() {
+			public Callable<List<DNAStrand>> create(FileChannel channel, long start, long end) {
+				return new DNAPieceParser(channel, start, end);
+			}
+		});
+
+		if(pieces.size() == 1) {
+			return pieces.get(0);
+		}
+		List<DNAStrand> strands = new ArrayList<DNAStrand>();
+		for(List<DNAStrand> piece : pieces) {
+			strands.addAll(piece);
+		}
+		return strands;
+	}
+
+        /* creates the parser of one line-aligned piece of the file */
+	private interface PieceParserFactory<T> {
+		Callable<T> create(FileChannel channel, long start, long end);
+	}
+
+        /**
+         * parsePieces:
+         * Find the line-aligned byte range of the partition, cut it into line-aligned pieces
+         * (at least one per thread, none larger than MAX_PIECE_SIZE) and parse every piece.
+         * @return the parsed pieces in file order
+         * @throws IOException
+         */
+	private static <T> List<T> parsePieces(String fileName, int partIndex, int numberOfParts, int numberOfThreads,
+			PieceParserFactory<T> factory) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		FileChannel channel = file.getChannel();
+		ExecutorService executor = null;
+
+		try {
+			long length = channel.size();
+			long start = nextLineStart(channel, (length * partIndex) / numberOfParts);
+			long end = nextLineStart(channel, (length * (partIndex + 1)) / numberOfParts);
+
+			long numberOfPieces = Math.max(numberOfThreads, (end - start + MAX_PIECE_SIZE - 1) / MAX_PIECE_SIZE);
+			List<Callable<T>> parsers = new ArrayList<Callable<T>>();
+			long pieceStart = start;
+			for(long i = 1; i <= numberOfPieces; i++) {
+				long pieceEnd = (i == numberOfPieces) ? end : nextLineStart(channel, start + ((end - start) * i) / numberOfPieces);
+				if(pieceEnd > pieceStart) {
+					parsers.add(factory.create(channel, pieceStart, pieceEnd));
+					pieceStart = pieceEnd;
+				}
+			}
+
+			List<T> pieces = new ArrayList<T>();
+			if(numberOfThreads <= 1 || parsers.size() <= 1) {
+				for(Callable<T> parser : parsers) {
+					pieces.add(parser.call());
+				}
+			} else {
+				executor = Executors.newFixedThreadPool(numberOfThreads);
+				for(Future<T> future : executor.invokeAll(parsers)) {
+					pieces.add(future.get());
+				}
+			}
+			if(pieces.isEmpty()) {
+				pieces.add(factory.create(channel, start, start).call());
+			}
+			return pieces;
+		} catch (IOException e) {
+			throw e;
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (Exception e) {
+			throw new IOException(e);
+		} finally {
+			if(executor != null) {
+				executor.shutdown();
+			}
+			file.close();
+		}
+	}
+
+        /**
+         * nextLineStart:
+         * @return the offset of the first line that starts at or after offset
+         * @throws IOException
+         */
+	private static long nextLineStart(FileChannel channel, long offset) throws IOException {
+		long length = channel.size();
+		if(offset <= 0) {
+			return 0;
+		}
+		if(offset >= length) {
+			return length;
+		}
+
+                /* a line starts at offset if the byte before it ends the previous line */
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long position = offset - 1;
+		while(position < length) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			for(int i = 0; i < n; i++) {
+				if(buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += n;
+		}
+		return length;
+	}
+
+        /**
+         * PieceParser:
+         * common state of the parsers of a mapped piece of the input
+         */
+	private static abstract class PieceParser {
+		private FileChannel channel;
+		private long start;
+		protected MappedByteBuffer buffer;
+		protected int position;
+		protected int limit;
+
+		PieceParser(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			limit = (int) (end - start);
+		}
+
+                /* map the piece, done by the parsing thread just before it is parsed */
+		protected void map() throws IOException {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, limit);
+			position = 0;
+		}
+
+                /* skip the rest of the current line including its terminator */
+		protected void skipLine() {
+			while(position < limit && buffer.get(position) != '\n') {
+				position++;
+			}
+			position++;
+		}
+
+		protected boolean isLineEnd(byte b) {
+			return b == '\n' || b == '\r';
+		}
+
+                /**
+                 * parseDouble:
+                 * Parse the number starting at position and leave position on the byte that
+                 * follows it. Decimal numbers with at most 15 significant digits (and others
+                 * whose digits fit in 53 bits) and a small exponent are converted exactly with a
+                 * single multiplication or division by a power of ten; anything else falls
+                 * back to Double.parseDouble.
+                 */
+		protected double parseDouble() {
+			int tokenStart = position;
+			boolean negative = false;
+			long mantissa = 0;
+			int exponent = 0;
+			int digits = 0;
+			boolean exact = true;
+
+			byte b = position < limit ? buffer.get(position) : 0;
+			if(b == '-' || b == '+') {
+				negative = b == '-';
+				position++;
+			}
+			boolean fraction = false;
+			boolean sawDigit = false;
+			while(position < limit) {
+				b = buffer.get(position);
+				if(b >= '0' && b <= '9') {
+					sawDigit = true;
+					if(mantissa != 0 || b != '0') {
+						digits++;
+					}
+					if(digits <= 18) {
+						mantissa = mantissa * 10 + (b - '0');
+						if(fraction) {
+							exponent--;
+						}
+					} else {
+						exact = false;
+					}
+				} else if(b == '.' && !fraction) {
+					fraction = true;
+				} else {
+					break;
+				}
+				position++;
+			}
+			if(position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+				position++;
+				boolean negativeExponent = false;
+				if(position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+					negativeExponent = buffer.get(position) == '-';
+					position++;
+				}
+				int value = 0;
+				while(position < limit && buffer.get(position) >= '0' && buffer.get(position) <= '9') {
+					if(value < 10000) {
+						value = value * 10 + (buffer.get(position) - '0');
+					}
+					position++;
+				}
+				exponent += negativeExponent ? -value : value;
+			}
+
+			if(exact && sawDigit && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22
+					&& (position >= limit || buffer.get(position) == ',' || isLineEnd(buffer.get(position)))) {
+				double value = (double) mantissa;
+				value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+				return negative ? -value : value;
+			}
+
+                        /* slow path: hand the whole field to Double.parseDouble */
+			position = tokenStart;
+			while(position < limit && buffer.get(position) != ',' && !isLineEnd(buffer.get(position))) {
+				position++;
+			}
+			byte[] token = new byte[position - tokenStart];
+			for(int i = 0; i < token.length; i++) {
+				token[i] = buffer.get(tokenStart + i);
+			}
+			return Double.parseDouble(new String(token, 0, token.length).trim());
+		}
+	}
+
+        /**
+         * PointPieceParser:
+         * parses lines of the form "x,y" into a PointSet
+         */
+	private static class PointPieceParser extends PieceParser implements Callable<PointSet> {
+
+		PointPieceParser(FileChannel channel, long start, long end) {
+			super(channel, start, end);
+		}
+
+		public PointSet call() throws IOException {
+			map();
+                        /* estimate the number of points from the size of the piece to avoid regrowing */
+			PointSet points = new PointSet(limit / 32 + 1);
+
+			while(position < limit) {
+				if(isLineEnd(buffer.get(position))) {
+					skipLine(); //empty line
+					continue;
+				}
+				double x = parseDouble();
+				if(position >= limit || buffer.get(position) != ',') {
+					throw new IOException("Expected a line of the form x,y");
+				}
+				position++;
+				double y = parseDouble();
+				points.add(x, y);
+				skipLine();
+			}
+			return points;
+		}
+	}
+
+        /**
+         * DNAPieceParser:
+         * parses lines of comma separated bases (e.g. "A,G,C,T") into DNA strands
+         */
+	private static class DNAPieceParser extends PieceParser implements Callable<List<DNAStrand>> {
+
+		DNAPieceParser(FileChannel channel, long start, long end) {
+			super(channel, start, end);
+		}
+
+		public List<DNAStrand> call() throws IOException {
+			map();
+			List<DNAStrand> strands = new ArrayList<DNAStrand>();
+                        /* the bases of the current line, packed as DNAStrand words */
+			long[] words = new long[2];
+
+			while(position < limit) {
+				int length = 0;
+				Arrays.fill(words, 0);
+				while(position < limit && !isLineEnd(buffer.get(position))) {
+					byte b = buffer.get(position++);
+					if(b == ',') {
+						continue;
+					}
+					byte ordinal = BASE_ORDINALS[b & 0xff];
+					if(ordinal < 0) {
+						throw new IOException("Invalid DNA base '" + (char) b + "'");
+					}
+					if(length == words.length * DNAStrand.BASES_PER_WORD) {
+						words = Arrays.copyOf(words, 2 * words.length);
+					}
+					words[length >> 5] |= (long) ordinal << ((length & 31) << 1);
+					length++;
+				}
+				skipLine();
+				if(length > 0) {
+					strands.add(new DNAStrand(words, 0, length));
+				}
+			}
+			return strands;
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+/**
+ * LoopbackCommunicator:
+ * Communicator between ranks that are threads of a single JVM. A message is
+ * put straight into the mailbox of its destination (see MailboxCommunicator),
+ * so running the distributed modes this way shows the cost of the algorithm
+ * and its protocol without any network in between.
+ */
+import java.io.IOException;
+
+
+public class LoopbackCommunicator extends MailboxCommunicator {
+
+        /* the communicators of all the ranks, by rank */
+	private LoopbackCommunicator[] group;
+
+	private LoopbackCommunicator(int rank, LoopbackCommunicator[] group) {
+		super(rank, group.length);
+		this.group = group;
+	}
+
+        /**
+         * createGroup:
+         * @param size: number of ranks
+         * @return the communicators of the ranks 0 .. size-1, one for every thread
+         */
+	public static LoopbackCommunicator[] createGroup(int size) {
+		LoopbackCommunicator[] group = new LoopbackCommunicator[size];
+		for(int rank = 0; rank < size; rank++) {
+			group[rank] = new LoopbackCommunicator(rank, group);
+		}
+		return group;
+	}
+
+	@Override
+	protected void deliver(int destination, int tag, Object buffer, int offset, int count) {
+		group[destination].arrived(new Message(getRank(), tag, copy(buffer, offset, count)));
+	}
+
+        /**
+         * abort:
+         * one of the ranks failed: wake up the others, which would otherwise wait for its
+         * messages forever
+         * @param cause
+         */
+	public void abort(Throwable cause) {
+		IOException failure = new IOException("Rank " + getRank() + " failed", cause);
+		for(LoopbackCommunicator communicator : group) {
+			communicator.fail(failure);
+		}
+	}
+
+	public void close() {
+	}
+
+}
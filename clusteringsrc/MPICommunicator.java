@@ -0,0 +1,213 @@
+/**
+ * MPICommunicator:
+ * Communicator on top of MPI.COMM_WORLD of mpiJava. This is the only class
+ * that uses MPI, so the other transports run without mpiJava installed.
+ * MPI errors are passed on as IOExceptions.
+ */
+import java.io.IOException;
+import java.util.Arrays;
+
+import mpi.*;
+
+
+public class MPICommunicator implements Communicator {
+
+	private int rank;
+	private int size;
+
+        /**
+         * init:
+         * initialize MPI, once per process
+         * @param args: the command line, as given by mpirun
+         * @return the communicator of this process
+         * @throws IOException
+         */
+	public static MPICommunicator init(String[] args) throws IOException {
+		try {
+			MPI.Init(args);
+			return new MPICommunicator(MPI.COMM_WORLD.Rank(), MPI.COMM_WORLD.Size());
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private MPICommunicator(int rank, int size) {
+		this.rank = rank;
+		this.size = size;
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void send(Object buffer, int offset, int count, int destination, int tag) throws IOException {
+		try {
+			MPI.COMM_WORLD.Send(buffer, offset, count, datatype(buffer), destination, tag);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public MessageStatus recv(Object buffer, int offset, int count, int source, int tag) throws IOException {
+		try {
+			Datatype type = datatype(buffer);
+			return toMessageStatus(MPI.COMM_WORLD.Recv(buffer, offset, count, type, source(source), tag(tag)), type);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public MessageStatus probe(int source, int tag) throws IOException {
+		try {
+			Status status = MPI.COMM_WORLD.Probe(source(source), tag(tag));
+                        /* the element count depends on the datatype, which is not known before receiving */
+			return new MessageStatus(status.source, status.tag, -1);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public MessageRequest isend(Object buffer, int offset, int count, int destination, int tag) throws IOException {
+		try {
+			Datatype type = datatype(buffer);
+			return new MPIRequest(MPI.COMM_WORLD.Isend(buffer, offset, count, type, destination, tag), type);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public MessageRequest irecv(Object buffer, int offset, int count, int source, int tag) throws IOException {
+		try {
+			Datatype type = datatype(buffer);
+			return new MPIRequest(MPI.COMM_WORLD.Irecv(buffer, offset, count, type, source(source), tag(tag)), type);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public MessageStatus waitAny(MessageRequest[] requests) throws IOException {
+                /* the requests that have not completed yet, and where they are in requests */
+		Request[] mpiRequests = new Request[requests.length];
+		int[] positions = new int[requests.length];
+		int pending = 0;
+		for(int i = 0; i < requests.length; i++) {
+			if(!((MPIRequest) requests[i]).completed) {
+				mpiRequests[pending] = ((MPIRequest) requests[i]).request;
+				positions[pending++] = i;
+			}
+		}
+		try {
+			Status status = Request.Waitany(Arrays.copyOf(mpiRequests, pending));
+			MPIRequest completed = (MPIRequest) requests[positions[status.index]];
+			completed.completed = true;
+			MessageStatus result = toMessageStatus(status, completed.type);
+			result.setIndex(positions[status.index]);
+			return result;
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public void waitAll(MessageRequest[] requests) throws IOException {
+		for(MessageRequest request : requests) {
+			request.waitFor();
+		}
+	}
+
+	public void bcast(Object buffer, int offset, int count, int root) throws IOException {
+		try {
+			MPI.COMM_WORLD.Bcast(buffer, offset, count, datatype(buffer), root);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public void allreduceSum(Object sendBuffer, Object receiveBuffer, int count) throws IOException {
+		try {
+			MPI.COMM_WORLD.Allreduce(sendBuffer, 0, receiveBuffer, 0, count, datatype(sendBuffer), MPI.SUM);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public void allreduceMax(Object sendBuffer, Object receiveBuffer, int count) throws IOException {
+		try {
+			MPI.COMM_WORLD.Allreduce(sendBuffer, 0, receiveBuffer, 0, count, datatype(sendBuffer), MPI.MAX);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public void allgather(Object sendBuffer, int count, Object receiveBuffer) throws IOException {
+		try {
+			Datatype type = datatype(sendBuffer);
+			MPI.COMM_WORLD.Allgather(sendBuffer, 0, count, type, receiveBuffer, 0, count, type);
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+	public void close() throws IOException {
+		try {
+			MPI.Finalize();
+		} catch (MPIException e) {
+			throw new IOException(e);
+		}
+	}
+
+        /* the MPI datatype of the elements of buffer */
+	private static Datatype datatype(Object buffer) {
+		if(buffer instanceof int[]) {
+			return MPI.INT;
+		} else if(buffer instanceof long[]) {
+			return MPI.LONG;
+		} else if(buffer instanceof double[]) {
+			return MPI.DOUBLE;
+		} else if(buffer instanceof byte[]) {
+			return MPI.BYTE;
+		}
+		throw new IllegalArgumentException("Unsupported buffer type " + buffer.getClass().getName());
+	}
+
+	private static int source(int source) {
+		return source == ANY_SOURCE ? MPI.ANY_SOURCE : source;
+	}
+
+	private static int tag(int tag) {
+		return tag == ANY_TAG ? MPI.ANY_TAG : tag;
+	}
+
+	private static MessageStatus toMessageStatus(Status status, Datatype type) throws MPIException {
+		return new MessageStatus(status.source, status.tag, status.Get_count(type));
+	}
+
+        /* an MPI request and the datatype of its buffer, needed to count the received elements */
+	private static class MPIRequest implements MessageRequest {
+
+		private Request request;
+		private Datatype type;
+		private boolean completed = false;
+
+		MPIRequest(Request request, Datatype type) {
+			this.request = request;
+			this.type = type;
+		}
+
+		public MessageStatus waitFor() throws IOException {
+			if(completed) {
+				return null;
+			}
+			try {
+				completed = true;
+				return toMessageStatus(request.Wait(), type);
+			} catch (MPIException e) {
+				throw new IOException(e);
+			}
+		}
+	}
+
+}
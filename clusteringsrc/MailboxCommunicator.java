@@ -0,0 +1,367 @@
+/**
+ * MailboxCommunicator:
+ * Communicator for transports that only move whole messages from one rank to
+ * another. Every rank has a mailbox that its incoming messages are put in, in
+ * the order they arrive; a subclass only has to get a message into the
+ * mailbox of its destination (see deliver and arrived). Messages a rank sends
+ * to itself never reach deliver.
+ *
+ * Receives take the oldest message in the mailbox that matches their source
+ * and tag, so messages between two ranks keep their order. A non-blocking
+ * receive is matched when it is waited for. Sends copy the message and never
+ * wait for the receiver.
+ *
+ * The collective operations are built from messages with a tag of their own:
+ * every rank sends its part to rank 0, which combines the parts in rank
+ * order and broadcasts the result.
+ */
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+
+public abstract class MailboxCommunicator implements Communicator {
+
+        /* tag of the messages of the collective operations, never matched by ANY_TAG */
+	private static final int COLLECTIVE_TAG = -2;
+
+	private int rank;
+	private int size;
+        /* messages that arrived for this rank and have not been received yet */
+	private LinkedList<Message> mailbox = new LinkedList<Message>();
+        /* set once the group can not go on, every wait for a message fails from then on */
+	private IOException failure = null;
+
+	protected MailboxCommunicator(int rank, int size) {
+		this.rank = rank;
+		this.size = size;
+	}
+
+        /**
+         * deliver:
+         * get count elements of buffer from offset on into the mailbox of destination (another
+         * rank), tagged with tag. buffer may be changed by the caller as soon as this returns.
+         * @param destination
+         * @param tag
+         * @param buffer: int[], long[], double[] or byte[]
+         * @param offset
+         * @param count
+         * @throws IOException
+         */
+	protected abstract void deliver(int destination, int tag, Object buffer, int offset, int count) throws IOException;
+
+        /* put a message for this rank into its mailbox */
+	protected void arrived(Message message) {
+		synchronized(mailbox) {
+			mailbox.addLast(message);
+			mailbox.notifyAll();
+		}
+	}
+
+        /* make every current and later wait for a message of this rank fail */
+	protected void fail(IOException cause) {
+		synchronized(mailbox) {
+			if(failure == null) {
+				failure = cause;
+			}
+			mailbox.notifyAll();
+		}
+	}
+
+	public int getRank() {
+		return rank;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void send(Object buffer, int offset, int count, int destination, int tag) throws IOException {
+		checkTag(tag);
+		sendMessage(buffer, offset, count, destination, tag);
+	}
+
+	public MessageStatus recv(Object buffer, int offset, int count, int source, int tag) throws IOException {
+		synchronized(mailbox) {
+			Message message;
+			while((message = take(source, tag)) == null) {
+				await();
+			}
+			return message.copyTo(buffer, offset, count);
+		}
+	}
+
+	public MessageStatus probe(int source, int tag) throws IOException {
+		synchronized(mailbox) {
+			Message message;
+			while((message = find(source, tag)) == null) {
+				await();
+			}
+			return new MessageStatus(message.source, message.tag, message.count);
+		}
+	}
+
+	public MessageRequest isend(Object buffer, int offset, int count, int destination, int tag) throws IOException {
+		send(buffer, offset, count, destination, tag);
+		return new MailboxRequest(null, 0, 0, destination, tag);
+	}
+
+	public MessageRequest irecv(Object buffer, int offset, int count, int source, int tag) throws IOException {
+		return new MailboxRequest(buffer, offset, count, source, tag);
+	}
+
+	public MessageStatus waitAny(MessageRequest[] requests) throws IOException {
+		synchronized(mailbox) {
+			while(true) {
+				boolean pending = false;
+				for(int i = 0; i < requests.length; i++) {
+					MailboxRequest request = (MailboxRequest) requests[i];
+					if(request.status == null) {
+						pending = true;
+						if(request.test()) {
+							MessageStatus status = request.status;
+							status.setIndex(i);
+							return status;
+						}
+					}
+				}
+				if(!pending) {
+					throw new IllegalStateException("All the requests have completed already");
+				}
+				await();
+			}
+		}
+	}
+
+	public void waitAll(MessageRequest[] requests) throws IOException {
+		for(MessageRequest request : requests) {
+			request.waitFor();
+		}
+	}
+
+	public void bcast(Object buffer, int offset, int count, int root) throws IOException {
+		if(rank == root) {
+			for(int i = 0; i < size; i++) {
+				if(i != root) {
+					sendMessage(buffer, offset, count, i, COLLECTIVE_TAG);
+				}
+			}
+		} else {
+			recv(buffer, offset, count, root, COLLECTIVE_TAG);
+		}
+	}
+
+	public void allreduceSum(Object sendBuffer, Object receiveBuffer, int count) throws IOException {
+		allreduce(sendBuffer, receiveBuffer, count, false);
+	}
+
+	public void allreduceMax(Object sendBuffer, Object receiveBuffer, int count) throws IOException {
+		allreduce(sendBuffer, receiveBuffer, count, true);
+	}
+
+	public void allgather(Object sendBuffer, int count, Object receiveBuffer) throws IOException {
+		if(rank == 0) {
+			System.arraycopy(sendBuffer, 0, receiveBuffer, 0, count);
+			for(int i = 1; i < size; i++) {
+				recv(receiveBuffer, i * count, count, i, COLLECTIVE_TAG);
+			}
+		} else {
+			sendMessage(sendBuffer, 0, count, 0, COLLECTIVE_TAG);
+		}
+		bcast(receiveBuffer, 0, size * count, 0);
+	}
+
+        /**
+         * allreduce:
+         * rank 0 adds up (or takes the maximum of) the parts in rank order, so the result
+         * does not depend on the order the parts arrive in
+         * @throws IOException
+         */
+	private void allreduce(Object sendBuffer, Object receiveBuffer, int count, boolean maximum) throws IOException {
+		if(rank == 0) {
+			System.arraycopy(sendBuffer, 0, receiveBuffer, 0, count);
+			Object part = Array.newInstance(sendBuffer.getClass().getComponentType(), count);
+			for(int i = 1; i < size; i++) {
+				recv(part, 0, count, i, COLLECTIVE_TAG);
+				combine(part, receiveBuffer, count, maximum);
+			}
+		} else {
+			sendMessage(sendBuffer, 0, count, 0, COLLECTIVE_TAG);
+		}
+		bcast(receiveBuffer, 0, count, 0);
+	}
+
+        /* add part to (or take the maximum with) result, element by element */
+	private static void combine(Object part, Object result, int count, boolean maximum) {
+		if(part instanceof int[]) {
+			int[] from = (int[]) part;
+			int[] to = (int[]) result;
+			for(int i = 0; i < count; i++) {
+				to[i] = maximum ? Math.max(to[i], from[i]) : to[i] + from[i];
+			}
+		} else if(part instanceof long[]) {
+			long[] from = (long[]) part;
+			long[] to = (long[]) result;
+			for(int i = 0; i < count; i++) {
+				to[i] = maximum ? Math.max(to[i], from[i]) : to[i] + from[i];
+			}
+		} else if(part instanceof double[]) {
+			double[] from = (double[]) part;
+			double[] to = (double[]) result;
+			for(int i = 0; i < count; i++) {
+				to[i] = maximum ? Math.max(to[i], from[i]) : to[i] + from[i];
+			}
+		} else {
+			throw new IllegalArgumentException("Can not reduce a buffer of type " + part.getClass().getName());
+		}
+	}
+
+        /* hand the message to its destination, which may be this rank */
+	private void sendMessage(Object buffer, int offset, int count, int destination, int tag) throws IOException {
+		if(destination == rank) {
+			arrived(new Message(rank, tag, copy(buffer, offset, count)));
+		} else {
+			deliver(destination, tag, buffer, offset, count);
+		}
+	}
+
+        /* a new array holding count elements of buffer from offset on */
+	protected static Object copy(Object buffer, int offset, int count) {
+		Object data = Array.newInstance(buffer.getClass().getComponentType(), count);
+		System.arraycopy(buffer, offset, data, 0, count);
+		return data;
+	}
+
+	private static void checkTag(int tag) {
+		if(tag < 0) {
+			throw new IllegalArgumentException("Message tags can not be negative: " + tag);
+		}
+	}
+
+	private static boolean matches(Message message, int source, int tag) {
+		return (source == ANY_SOURCE || message.source == source)
+				&& (tag == ANY_TAG ? message.tag >= 0 : message.tag == tag);
+	}
+
+        /* the oldest matching message, left in the mailbox. Called holding the mailbox lock. */
+	private Message find(int source, int tag) {
+		for(Message message : mailbox) {
+			if(matches(message, source, tag)) {
+				return message;
+			}
+		}
+		return null;
+	}
+
+        /* the oldest matching message, taken out of the mailbox. Called holding the mailbox lock. */
+	private Message take(int source, int tag) {
+		Iterator<Message> iterator = mailbox.iterator();
+		while(iterator.hasNext()) {
+			Message message = iterator.next();
+			if(matches(message, source, tag)) {
+				iterator.remove();
+				return message;
+			}
+		}
+		return null;
+	}
+
+        /* wait for the next message to arrive. Called holding the mailbox lock. */
+	private void await() throws IOException {
+		if(failure != null) {
+			throw new IOException(failure.getMessage(), failure);
+		}
+		try {
+			mailbox.wait();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for a message", e);
+		}
+		if(failure != null) {
+			throw new IOException(failure.getMessage(), failure);
+		}
+	}
+
+        /**
+         * Message:
+         * a copy of the elements sent, with the rank it came from and its tag
+         */
+	protected static class Message {
+
+		protected int source;
+		protected int tag;
+                /* int[], long[], double[] or byte[] holding exactly the elements sent */
+		protected Object data;
+		protected int count;
+
+		protected Message(int source, int tag, Object data) {
+			this.source = source;
+			this.tag = tag;
+			this.data = data;
+			count = Array.getLength(data);
+		}
+
+                /* copy the elements into buffer, which has room for count of them at offset */
+		private MessageStatus copyTo(Object buffer, int offset, int count) throws IOException {
+			if(buffer.getClass() != data.getClass()) {
+				throw new IOException("A message of " + data.getClass().getSimpleName()
+						+ " can not be received into " + buffer.getClass().getSimpleName());
+			}
+			if(this.count > count) {
+				throw new IOException("A message of " + this.count + " elements does not fit in " + count);
+			}
+			System.arraycopy(data, 0, buffer, offset, this.count);
+			return new MessageStatus(source, tag, this.count);
+		}
+	}
+
+        /**
+         * MailboxRequest:
+         * a receive, matched when it is waited for, or a send, which has completed when it
+         * starts and has no buffer
+         */
+	private class MailboxRequest implements MessageRequest {
+
+		private Object buffer;
+		private int offset;
+		private int count;
+		private int source;
+		private int tag;
+		private MessageStatus status = null;
+
+		MailboxRequest(Object buffer, int offset, int count, int source, int tag) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.count = count;
+			this.source = source;
+			this.tag = tag;
+		}
+
+                /* complete the request if it can be. Called holding the mailbox lock. */
+		private boolean test() throws IOException {
+			if(buffer == null) {
+				status = new MessageStatus(rank, tag, 0);
+				return true;
+			}
+			Message message = take(source, tag);
+			if(message == null) {
+				return false;
+			}
+			status = message.copyTo(buffer, offset, count);
+			return true;
+		}
+
+		public MessageStatus waitFor() throws IOException {
+			synchronized(mailbox) {
+				if(status != null) {
+					return null;
+				}
+				while(!test()) {
+					await();
+				}
+				return status;
+			}
+		}
+	}
+
+}
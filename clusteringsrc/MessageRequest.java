@@ -0,0 +1,19 @@
+/**
+ * MessageRequest:
+ * A send or receive started by Communicator.isend / irecv. It is completed
+ * by waiting for it, on its own or through the communicator that started it.
+ */
+import java.io.IOException;
+
+
+public interface MessageRequest {
+
+        /**
+         * waitFor:
+         * wait for the send or receive to complete
+         * @return the status of the message, null if the request had completed already
+         * @throws IOException
+         */
+	MessageStatus waitFor() throws IOException;
+
+}
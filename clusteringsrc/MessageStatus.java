@@ -0,0 +1,40 @@
+/**
+ * MessageStatus:
+ * What a Communicator tells about a received (or probed) message.
+ */
+public class MessageStatus {
+
+	private int source;
+	private int tag;
+        /* number of elements in the message */
+	private int count;
+        /* position of the request in the array given to waitAny */
+	private int index = -1;
+
+	public MessageStatus(int source, int tag, int count) {
+		this.source = source;
+		this.tag = tag;
+		this.count = count;
+	}
+
+	public int getSource() {
+		return source;
+	}
+
+	public int getTag() {
+		return tag;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+}
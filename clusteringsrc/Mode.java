@@ -1,6 +1,9 @@
 /**
- * Mode: The mode can be either sequential or parallel
+ * Mode: The mode can be sequential, parallel (master / participants),
+ * collective (all processes compute, results combined with MPI collectives),
+ * threaded (a single process, the work shared by a fork/join pool of threads) or
+ * minibatch (a single process updating the centroids from random batches of the input)
  */
 public enum Mode {
-	sequential, parallel
+	sequential, parallel, collective, threaded, minibatch
 }
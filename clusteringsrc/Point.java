@@ -4,6 +4,7 @@
  * It stores the point's x and y co-ordinates
  */
 import java.io.Serializable;
+import java.util.List;
 
 
 public class Point implements Cloneable, Serializable {
@@ -35,6 +36,33 @@ public class Point implements Cloneable, Serializable {
 		return Math.sqrt( Math.pow(x-o.getX(),2) +  Math.pow(y-o.getY(),2));
 	}
 
+        /**
+         * distance:
+         * calculate distance between this point and the co-ordinates (ox, oy)
+         * without having to materialise a Point object for them
+         * @param ox
+         * @param oy
+         * @return
+         */
+	public double distance (double ox, double oy) {
+		return Math.sqrt( (x-ox)*(x-ox) + (y-oy)*(y-oy) );
+	}
+
+        /**
+         * totalShift:
+         * sum of the distances the centroids moved from one iteration to the next
+         * @param previous
+         * @param current: centroid c of current is the new location of centroid c of previous
+         * @return
+         */
+	public static double totalShift(List<Point> previous, List<Point> current) {
+		double shift = 0;
+		for(int c = 0; c < current.size(); c++) {
+			shift += current.get(c).distance(previous.get(c));
+		}
+		return shift;
+	}
+
 	public double getX() {
 		return x;
 	}
@@ -0,0 +1,93 @@
+/**
+ * PointAssigner:
+ * Assigns every point of a range of a PointSet to the index of its nearest
+ * centroid. Several assigners can share one PointSet, each working on its own
+ * range (see ForkJoinPointAssignment).
+ * One assigner is used for the whole run, so that implementations can carry
+ * state such as distance bounds from one iteration to the next. Whatever
+ * the implementation, ties go to the centroid with the lowest index, so all
+ * of them produce exactly the same assignments.
+ */
+import java.util.List;
+
+
+public abstract class PointAssigner {
+
+	protected PointSet points;
+        /* the points [from, from + size) of the set are assigned */
+	protected int from;
+	protected int size;
+
+	protected PointAssigner(PointSet points, int from, int to) {
+		this.points = points;
+		this.from = from;
+		this.size = to - from;
+	}
+
+        /**
+         * create:
+         * @param assignment
+         * @param points
+         * @return an assigner of the requested kind for all the points
+         */
+	public static PointAssigner create(Assignment assignment, PointSet points) {
+		return create(assignment, points, 0, points.size());
+	}
+
+        /**
+         * create:
+         * @param assignment
+         * @param points
+         * @param from
+         * @param to
+         * @return an assigner of the requested kind for the points [from, to)
+         */
+	public static PointAssigner create(Assignment assignment, PointSet points, int from, int to) {
+		switch(assignment) {
+		case hamerly:
+			return new HamerlyPointAssigner(points, from, to);
+		case elkan:
+			return new ElkanPointAssigner(points, from, to);
+		default:
+			return new ExactPointAssigner(points, from, to);
+		}
+	}
+
+        /**
+         * assign:
+         * @param centroids: the current centroids. There are always as many of them during a run.
+         * @param assignments: assignments[i] is set to the index of the nearest centroid of
+         * point from + i
+         */
+	public abstract void assign(List<Point> centroids, int[] assignments);
+
+        /* same formula as Point.distance(ox, oy) so that every assigner sees the same distances */
+	protected static double distance(double x, double y, double cx, double cy) {
+		return Math.sqrt( (cx-x)*(cx-x) + (cy-y)*(cy-y) );
+	}
+
+	protected double x(int i) {
+		return points.getX(from + i);
+	}
+
+	protected double y(int i) {
+		return points.getY(from + i);
+	}
+
+	protected static double[] xs(List<Point> centroids) {
+		double[] xs = new double[centroids.size()];
+		for(int c = 0; c < xs.length; c++) {
+			xs[c] = centroids.get(c).getX();
+		}
+		return xs;
+	}
+
+	protected static double[] ys(List<Point> centroids) {
+		double[] ys = new double[centroids.size()];
+		for(int c = 0; c < ys.length; c++) {
+			ys[c] = centroids.get(c).getY();
+		}
+		return ys;
+	}
+
+}
@@ -0,0 +1,136 @@
+/**
+ * PointClusterSums:
+ * Sufficient statistics of a 2D clustering step. For every cluster
+ * (addressed by the index of its centroid) we keep the sum of the x
+ * co-ordinates, the sum of the y co-ordinates and the number of points
+ * assigned to it. This is all that is needed to compute the new centroid
+ * locations, and partial sums from several processes can simply be added up.
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class PointClusterSums {
+
+        /* per cluster sum of x and y co-ordinates */
+	private double[] sumX;
+	private double[] sumY;
+        /* per cluster number of points */
+	private long[] counts;
+
+	public PointClusterSums(int numberOfClusters) {
+		sumX = new double[numberOfClusters];
+		sumY = new double[numberOfClusters];
+		counts = new long[numberOfClusters];
+	}
+
+        /**
+         * add:
+         * account for the point (x, y) being assigned to the cluster clusterIndex
+         * @param clusterIndex
+         * @param x
+         * @param y
+         */
+	public void add(int clusterIndex, double x, double y) {
+		sumX[clusterIndex] += x;
+		sumY[clusterIndex] += y;
+		counts[clusterIndex]++;
+	}
+
+        /**
+         * merge:
+         * add the partial sums computed by some other process to these sums
+         * @param other
+         */
+	public void merge(PointClusterSums other) {
+		for(int i = 0; i < counts.length; i++) {
+			sumX[i] += other.sumX[i];
+			sumY[i] += other.sumY[i];
+			counts[i] += other.counts[i];
+		}
+	}
+
+        /**
+         * toArray:
+         * flatten the sums into a single array of (sumX, sumY, count) triples,
+         * one per cluster, so that it can be sent or reduced as MPI.DOUBLE
+         * @return
+         */
+	public double[] toArray() {
+		double[] array = new double[3 * counts.length];
+		copyTo(array);
+		return array;
+	}
+
+        /**
+         * copyTo:
+         * flatten the sums into an existing array (see toArray), so that a send
+         * buffer can be reused across iterations
+         * @param array
+         */
+	public void copyTo(double[] array) {
+		for(int i = 0; i < counts.length; i++) {
+			array[3 * i] = sumX[i];
+			array[3 * i + 1] = sumY[i];
+			array[3 * i + 2] = counts[i];
+		}
+	}
+
+        /**
+         * merge:
+         * add partial sums flattened as (sumX, sumY, count) triples to these sums
+         * @param array
+         */
+	public void merge(double[] array) {
+		for(int i = 0; i < counts.length; i++) {
+			sumX[i] += array[3 * i];
+			sumY[i] += array[3 * i + 1];
+			counts[i] += (long) array[3 * i + 2];
+		}
+	}
+
+        /**
+         * fromArray:
+         * rebuild the sums from an array produced by toArray
+         * @param array
+         * @return
+         */
+	public static PointClusterSums fromArray(double[] array) {
+		PointClusterSums sums = new PointClusterSums(array.length / 3);
+		for(int i = 0; i < sums.counts.length; i++) {
+			sums.sumX[i] = array[3 * i];
+			sums.sumY[i] = array[3 * i + 1];
+			sums.counts[i] = (long) array[3 * i + 2];
+		}
+		return sums;
+	}
+
+	public long getCount(int clusterIndex) {
+		return counts[clusterIndex];
+	}
+
+        /**
+         * computeCentroids:
+         * calculate the mean of every cluster. The centroid at index i is always the
+         * centroid of cluster i, so a cluster without any points keeps its previous
+         * centroid and the number of clusters never shrinks.
+         * @param previousCentroids: the centroids the points were assigned to
+         * @return
+         */
+	public List<Point> computeCentroids(List<Point> previousCentroids) {
+		List<Point> centroids = new ArrayList<Point>(counts.length);
+
+		for(int i = 0; i < counts.length; i++) {
+
+			if(counts[i]==0) {
+				centroids.add(previousCentroids.get(i));
+				continue; //cluster has no points
+			}
+
+			centroids.add(new Point(sumX[i] / (double) counts[i], sumY[i] / (double) counts[i]));
+		}
+
+		return centroids;
+	}
+
+}
@@ -0,0 +1,182 @@
+/**
+ * PointCollectiveClustering:
+ * Implements a parallel version of K-means on 2D points built on
+ * collective operations (see Communicator). Unlike PointParallelClustering there is no
+ * dedicated master: every process, including Process-0, reads its own portion
+ * of the points and assigns it to the nearest centroids. The per-cluster
+ * sums are combined with an Allreduce, after which every process holds
+ * the same sums and recalculates the same centroids locally. Within a process
+ * the portion is shared by a pool of threads (--threads) whose partial sums
+ * are merged before the Allreduce.
+ */
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PointCollectiveClustering {
+
+	private int k;
+        /* the portion of 2D points owned by this process */
+	private PointSet pointPortion = null;
+        /* threads sharing the local portion, and the work they do in every iteration */
+	private ForkJoinPool pool = null;
+	private ForkJoinPointAssignment assignment = null;
+	private List<Point> centroids = null;
+        /* how the initial centroids are chosen */
+	private Seeding seeding;
+        /* upper limit on the number of iterations and the convergence test */
+	private ClusteringOptions options;
+        /* the processes taking part, and the messages between them */
+	private Communicator communicator;
+	private int numberOfProcesses = 0;
+	private int myRank;
+
+        /**
+         * Constructor that initializes the parallel clustering data structures
+         * @param communicator: the processes taking part, this one included
+         * @param k
+         * @param inputFileName: CSV file of 2D points, every process reads its own part of it
+         * @param options: how the points are assigned to the centroids
+         * @throws IOException
+         */
+	public PointCollectiveClustering(Communicator communicator, int k, String inputFileName, ClusteringOptions options) throws IOException {
+		this.k = k;
+		this.communicator = communicator;
+		initialize(inputFileName, options);
+	}
+
+        /**
+         * initialize: get the number of processes and the rank of the current one.
+         * Read the local portion of the input: process i reads part i of numberOfProcesses.
+         */
+	private void initialize(String inputFileName, ClusteringOptions options) throws IOException {
+		seeding = options.getSeeding();
+		this.options = options;
+		numberOfProcesses = communicator.getSize();
+		myRank = communicator.getRank();
+
+		pointPortion = InputPartitionReader.readPoints(inputFileName, myRank, numberOfProcesses);
+		pool = new ForkJoinPool(options.getThreads());
+		assignment = new ForkJoinPointAssignment(pointPortion, options.getAssignment(), pool);
+	}
+
+        /**
+         * createInitialCentroids:
+         * With Seeding.kmeansplusplus every process takes part in k-means|| (see PointSeeding).
+         * Otherwise choose the initial k centroids randomly from within the available 2D points.
+         * The portion sizes are exchanged with an Allgather, Process-0 picks k distinct
+         * random positions in the whole input (all of them if there are fewer, the last one
+         * repeated for the remaining centroids) and broadcasts them, and every process fills
+         * in the co-ordinates of the chosen points it owns. Each co-ordinate is contributed
+         * by exactly one process, so an Allreduce(SUM) gives every process all the centroids.
+         * @throws IOException
+         */
+	private void createInitialCentroids() throws IOException {
+
+		if(seeding == Seeding.kmeansplusplus) {
+			centroids = PointSeeding.chooseKMeansParallel(communicator, pointPortion, k, new Random());
+			return;
+		}
+
+		int[] portionSize = {pointPortion.size()};
+		int[] portionSizes = new int[numberOfProcesses];
+		communicator.allgather(portionSize, 1, portionSizes);
+
+		long numberOfPoints = 0;
+		long myOffset = 0;
+		for(int i = 0; i < numberOfProcesses; i++) {
+			if(i < myRank) {
+				myOffset += portionSizes[i];
+			}
+			numberOfPoints += portionSizes[i];
+		}
+
+		if(numberOfPoints == 0) {
+			throw new IllegalArgumentException("Can not cluster the points, no process holds any");
+		}
+
+		long[] chosen = new long[k];
+		if(myRank==0) {
+			Random rand = new Random();
+			HashSet<Long> chosenSet = new HashSet<Long>();
+			int c = 0;
+			while(c < Math.min(k, numberOfPoints)) {
+				long index = (long) (rand.nextDouble() * numberOfPoints);
+				if(chosenSet.add(index)) {
+					chosen[c++] = index;
+				}
+			}
+                        /* with fewer points than k the remaining centroids repeat the last one (their clusters stay empty) */
+			for(; c < k; c++) {
+				chosen[c] = chosen[c - 1];
+			}
+		}
+		communicator.bcast(chosen, 0, k, 0);
+
+		double[] localCentroids = new double[2 * k];
+		for(int c = 0; c < k; c++) {
+			if(chosen[c] >= myOffset && chosen[c] < myOffset + pointPortion.size()) {
+				int index = (int) (chosen[c] - myOffset);
+				localCentroids[2 * c] = pointPortion.getX(index);
+				localCentroids[2 * c + 1] = pointPortion.getY(index);
+			}
+		}
+		double[] centroidArray = new double[2 * k];
+		communicator.allreduceSum(localCentroids, centroidArray, 2 * k);
+
+		centroids = new ArrayList<Point>();
+		for(int c = 0; c < k; c++) {
+			centroids.add(new Point(centroidArray[2 * c], centroidArray[2 * c + 1]));
+		}
+	}
+
+        /**
+         * performClustering:
+         * Choose the initial centroids and iterate until the centroids stop moving.
+         * Every process takes part in every step.
+         * @return: the final list of k centroids on Process-0, null on the other processes
+         * @throws IOException
+         */
+	public List<Point> performClustering() throws IOException {
+
+		createInitialCentroids();
+
+		List<Point> oldCentroids;
+		int iteration = 0;
+		double shift;
+		do {
+			oldCentroids = new ArrayList<Point>(centroids);
+
+                        /* assign the local portion and accumulate its per-cluster sums */
+			double[] localSums = assignment.computeClusterSums(centroids).toArray();
+			double[] globalSums = new double[localSums.length];
+                        /*
+                        combine the sums of all the processes. Every process receives the same
+                        global sums, so all of them arrive at the same new centroids and the same
+                        decision about convergence without any further messages.
+                         */
+			communicator.allreduceSum(localSums, globalSums, localSums.length);
+
+			centroids = PointClusterSums.fromArray(globalSums).computeCentroids(centroids);
+			shift = Point.totalShift(oldCentroids, centroids);
+			iteration++;
+			if(myRank==0) {
+				ClusteringOptions.reportIteration(iteration, shift);
+			}
+
+		} while(iteration < options.getMaxIterations() && !options.isConverged(shift));
+
+                /* stop the threads of this process */
+		pool.shutdown();
+
+		if(myRank==0) {
+			return centroids;
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,136 @@
+/**
+ * PointMiniBatchClustering:
+ * Implements mini-batch K-means on 2D points. Every iteration draws a batch
+ * of random points, assigns them to the nearest centroids and moves every
+ * centroid towards its points with a learning rate of 1 / (number of points
+ * the centroid has been given so far). That makes every centroid the mean of
+ * all the points ever assigned to it, so the per-cluster sums are simply
+ * accumulated over the batches. The run stops once the batches stop getting
+ * nearer to their centroids (see ClusteringOptions.isMiniBatchConverged). A
+ * binary dataset is sampled straight from the file and never held in memory,
+ * a CSV file is read into memory first.
+ */
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+
+public class PointMiniBatchClustering {
+
+	private int k;
+	private String inputFileName;
+	private ClusteringOptions options;
+	private Random rand = new Random();
+        /* the input: an opened binary dataset, or the points of a CSV file */
+	private BinaryDataset dataset;
+	private PointSet points;
+	private long numberOfPoints;
+
+	public PointMiniBatchClustering(int k, String inputFileName, ClusteringOptions options) {
+		this.k = k;
+		this.inputFileName = inputFileName;
+		this.options = options;
+	}
+
+        /**
+         * performClustering:
+         * Step-1: Choose the initial k centroids (see Seeding) from a sample of the input.
+         * Step-2: Draw a batch, assign it to the centroids and measure its cost, the mean
+         * distance of its points from their centroids.
+         * Step-3: Add the batch to the per-cluster sums of all the batches so far and move
+         * every centroid to the mean of its sums
+         * Repeat Steps 2 and 3 until the cost has not gone down for --patience batches (see
+         * ClusteringOptions.isMiniBatchConverged), at most for the maximum number of iterations
+         * @return
+         * @throws IOException
+         */
+	public List<Point> performClustering() throws IOException {
+		openInput();
+		try {
+			int batchSize = options.getBatchSize();
+			List<Point> centroids = PointSeeding.chooseCentroids(options.getSeeding(), sample(Math.max(batchSize, k)), k, rand);
+			List<Point> oldCentroids;
+			PointClusterSums sums = new PointClusterSums(k);
+			int[] assignments = new int[batchSize];
+			double lowestCost = Double.POSITIVE_INFINITY;
+			int quietBatches = 0;
+
+			for(int iteration = 1; iteration <= options.getMaxIterations(); iteration++) {
+				PointSet batch = sample(batchSize);
+                                /* bounds would not carry over to the next batch, so the batch is assigned exactly */
+				PointAssigner.create(Assignment.exact, batch).assign(centroids, assignments);
+				double cost = cost(batch, centroids, assignments);
+				if(cost < lowestCost) {
+					lowestCost = cost;
+					quietBatches = 0;
+				} else if(options.isMiniBatchConverged(++quietBatches)) {
+					break;
+				}
+				for(int i = 0; i < batch.size(); i++) {
+					sums.add(assignments[i], batch.getX(i), batch.getY(i));
+				}
+				oldCentroids = centroids;
+				centroids = sums.computeCentroids(centroids);
+				ClusteringOptions.reportIteration(iteration, Point.totalShift(oldCentroids, centroids));
+			}
+
+			return centroids;
+		} finally {
+			if(dataset != null) {
+				dataset.close();
+			}
+		}
+	}
+
+        /**
+         * cost:
+         * @param batch
+         * @param centroids
+         * @param assignments: index of the centroid of every point of batch
+         * @return the mean distance of the points of batch from their centroids
+         */
+	private static double cost(PointSet batch, List<Point> centroids, int[] assignments) {
+		double distance = 0;
+		for(int i = 0; i < batch.size(); i++) {
+			distance += centroids.get(assignments[i]).distance(batch.getX(i), batch.getY(i));
+		}
+		return distance / batch.size();
+	}
+
+	private void openInput() throws IOException {
+		if(BinaryDataset.isBinaryDataset(inputFileName)) {
+			dataset = BinaryDataset.open(inputFileName, DataType.point);
+			numberOfPoints = dataset.getCount();
+		} else {
+			points = InputPartitionReader.readPoints(inputFileName, 0, 1, options.getThreads());
+			numberOfPoints = points.size();
+		}
+	}
+
+        /**
+         * sample:
+         * draw size points uniformly at random, with replacement. The positions are sorted so
+         * that a binary dataset is read front to back.
+         * @param size
+         * @return
+         * @throws IOException
+         */
+	private PointSet sample(int size) throws IOException {
+		long[] indices = new long[size];
+		for(int i = 0; i < size; i++) {
+			indices[i] = (long) (rand.nextDouble() * numberOfPoints);
+		}
+		Arrays.sort(indices);
+
+		if(dataset != null) {
+			return dataset.readPoints(indices);
+		}
+		PointSet batch = new PointSet(size);
+		for(long index : indices) {
+			batch.add(points.getX((int) index), points.getY((int) index));
+		}
+		return batch;
+	}
+
+}
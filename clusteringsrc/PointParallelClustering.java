@@ -1,86 +1,229 @@
 /**
  * PointParallelClustering:
  * Implements the logic for the parallel version of K-means
- * algorithm on 2D points
+ * algorithm on 2D points. Every participant shares its portion among a pool
+ * of threads (--threads) and merges their partial sums before replying, so one
+ * participant per node is enough. With dynamic scheduling Process-0 moves chunks
+ * of the input from slow to fast participants (see ChunkSchedule). With tree
+ * reduction the participants add up their sums along a binomial tree (see
+ * TreeReduction) instead of all sending them to Process-0.
  */
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-
-import mpi.*;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class PointParallelClustering {
 
-        /* MPI message tags */
+        /* message tags */
 	private static final int CENTROID_TAG = 1;
-	private static final int POINT_PORTION_TAG = 2;
+	private static final int SEED_TAG = 2;
 	private static final int RESULT_TAG = 3;
 	private static final int COMPLETED_TAG = 4;
+	private static final int SCHEDULE_TAG = 5;
 	
 	private int k;
-	private List<Point> points = null;
         private List<Point> centroids = null;
-        private HashMap<Point, List<Point>> finalMap = null;
+        /* the portion of 2D points read by a participant, all its chunks one after the other */
+        private PointSet pointPortion = null;
+        /* the chunks of the input a participant holds, by chunk number */
+        private Map<Integer, PointSet> chunkPortions = new HashMap<Integer, PointSet>();
+        private String inputFileName;
+        private int numberOfChunks;
+        /* which participant holds which chunks (Process-0 only) */
+        private ChunkSchedule schedule = null;
+        /* threads sharing the portion of a participant, and the work they do in every iteration */
+        private ForkJoinPool pool = null;
+        private ForkJoinPointAssignment assignment = null;
+        /* per-cluster sums of the current iteration, merged from all the participants */
+        private PointClusterSums finalSums = null;
+        /* reusable message buffers: centroids as (x, y) pairs, results as (sumX, sumY, count) triples */
+        private double[] centroidBuffer;
+        private double[] resultBuffer;
+        /* sums received from a child in the reduction tree */
+        private double[] reductionBuffer;
+        /*
+        Process-0 only: one result buffer per participant, so that all the results can be
+        received at the same time, and the pending non-blocking sends and receives
+         */
+        private double[][] resultBuffers;
+        private MessageRequest[] centroidRequests;
+        private MessageRequest[] resultRequests;
+        /* upper limit on the number of iterations and the convergence test */
+        private ClusteringOptions options;
+        /* the processes taking part, and the messages between them */
+        private Communicator communicator;
         private int numberOfProcesses = 0;
 	private int myRank;
-	private int splitSize;
 
         /**
          * Constructor that initializes the parallel clustering data structures
+         * @param communicator: the processes taking part, this one included
+         * @param k
+         * @param inputFileName: CSV file of 2D points, every participant reads its own part of it
+         * @param options: how the points are assigned to the centroids
+         * @throws IOException
          */
-	public PointParallelClustering(String[] args, int k, List<Point> points) throws MPIException {
+	public PointParallelClustering(Communicator communicator, int k, String inputFileName, ClusteringOptions options) throws IOException {
 		this.k = k;		
-		initialize(args, points);
+		this.communicator = communicator;
+		this.options = options;
+		centroidBuffer = new double[2 * k];
+		resultBuffer = new double[3 * k];
+		if(options.getReduction() == Reduction.tree) {
+			reductionBuffer = new double[3 * k];
+		}
+		initialize(inputFileName, options);
+	}
+
+        /**
+         * initialize: get the number of processes and the rank of the current one.
+         * Read the local portion of points and calculate initial centroid locations.
+         */
+	private void initialize(String inputFileName, ClusteringOptions options) throws IOException {
+		numberOfProcesses = communicator.getSize();
+		if(numberOfProcesses < 2) {
+			throw new IllegalArgumentException("The parallel mode needs at least 2 processes, "
+					+ "Process-0 and a participant holding the input");
+		}
+		myRank = communicator.getRank();
+		this.inputFileName = inputFileName;
+		numberOfChunks = (numberOfProcesses - 1) * options.getChunksPerParticipant();
+		
                 /*
-                splitSize = (total number of points) / (number of processes - 1)
                 In our design, the Process-0 acts like the master process and assigns computation work
-                to other processes. Hence, (numberOfProcesses - 1)
+                to other processes. Hence the input is split into (numberOfProcesses - 1) parts, or
+                chunksPerProcess times as many chunks with dynamic scheduling, and participant i reads
+                part i-1 (its share of the chunks). The master never holds any points.
                  */
-		splitSize = (int) Math.ceil( ((double) points.size()) / ((double) (numberOfProcesses - 1)) );
+		if(myRank==0) {
+			schedule = new ChunkSchedule(numberOfProcesses - 1, options.getChunksPerParticipant());
+			resultBuffers = new double[numberOfProcesses][3 * k];
+			centroidRequests = new MessageRequest[numberOfProcesses - 1];
+			resultRequests = new MessageRequest[numberOfProcesses - 1];
+			if(options.getSeeding() == Seeding.kmeansplusplus) {
+				centroids = PointSeeding.chooseKMeansParallel(communicator, new PointSet(), k, new Random());
+			} else {
+				createInitialCentroids();
+			}
+		} else {
+			pool = new ForkJoinPool(options.getThreads());
+			loadChunks(ChunkSchedule.initialChunks(myRank, options.getChunksPerParticipant()), options.getChunksPerParticipant());
+			if(options.getSeeding() == Seeding.kmeansplusplus) {
+                                /* every process takes part in k-means||, the master with no points */
+				PointSeeding.chooseKMeansParallel(communicator, pointPortion, k, new Random());
+			} else {
+				sendSeedCandidates();
+			}
+		}
 	}
 
         /**
-         * initialize: get the number of processes in the MPI environment and get current rank.
-         * Calculate initial centroid locations.
+         * loadChunks:
+         * make the given chunks the portion of this participant. Chunks it already holds are
+         * kept, the others are read from the input file.
+         * @param chunks
+         * @param count: number of entries of chunks to use
+         * @throws IOException
          */
-	private void initialize(String[] args, List<Point> points) throws MPIException {
-		MPI.Init(args);
-		numberOfProcesses = MPI.COMM_WORLD.Size();
-		myRank = MPI.COMM_WORLD.Rank();
-		
-		if(myRank==0) {
-			this.points = points; 
-			createInitialCentroids();
+	private void loadChunks(int[] chunks, int count) throws IOException {
+		Map<Integer, PointSet> loaded = new HashMap<Integer, PointSet>();
+		int numberOfPoints = 0;
+		for(int c = 0; c < count; c++) {
+			PointSet chunk = chunkPortions.get(chunks[c]);
+			if(chunk == null) {
+				chunk = InputPartitionReader.readPoints(inputFileName, chunks[c], numberOfChunks, options.getThreads());
+			}
+			loaded.put(chunks[c], chunk);
+			numberOfPoints += chunk.size();
+		}
+		chunkPortions = loaded;
+
+		if(count == 1) {
+			pointPortion = loaded.get(chunks[0]);
+		} else {
+			pointPortion = new PointSet(numberOfPoints);
+			for(int c = 0; c < count; c++) {
+				pointPortion.addAll(loaded.get(chunks[c]));
+			}
 		}
+                /* the distance bounds of the old portion do not carry over */
+		assignment = new ForkJoinPointAssignment(pointPortion, options.getAssignment(), pool);
 	}
 
         /**
          * createInitialCentroids:
          * Choose the initial k centroids randomly from within the available 2D points.
+         * The master learns how many points every participant holds, picks k distinct
+         * random positions in the whole input (all of them if there are fewer) and asks the
+         * owning participants for the co-ordinates of those points.
+         * @throws IOException
          */
-	private void createInitialCentroids() {
+	private void createInitialCentroids() throws IOException {
 		
 		Random rand = new Random();
 		centroids = new ArrayList<Point>();
+		int[] portionSizes = new int[numberOfProcesses];
+		int[] count = new int[1];
+		long numberOfPoints = 0;
 		
-		for(int i = 0; i < k; i++) {
-			int index = rand.nextInt(points.size());
-			Point p = (Point) points.get(index).clone();
-			
-			while(centroids.contains(p)) {
-				index = rand.nextInt(points.size());
-				p = (Point) points.get(index).clone();
+		for(int i = 1; i < numberOfProcesses; i++) {
+			communicator.recv(count, 0, 1, i, SEED_TAG);
+			portionSizes[i] = count[0];
+			numberOfPoints += count[0];
+		}
+		
+		if(numberOfPoints == 0) {
+			throw new IllegalArgumentException("Can not cluster the points, no participant holds any");
+		}
+		
+		HashSet<Long> chosen = new HashSet<Long>();
+		while(chosen.size() < Math.min(k, numberOfPoints)) {
+			chosen.add((long) (rand.nextDouble() * numberOfPoints));
+		}
+		
+		long offset = 0;
+		int[] localIndices = new int[k];
+		for(int i = 1; i < numberOfProcesses; i++) {
+			int m = 0;
+			for(long index : chosen) {
+				if(index >= offset && index < offset + portionSizes[i]) {
+					localIndices[m++] = (int) (index - offset);
+				}
 			}
-			
-			centroids.add(p);			
+			communicator.send(localIndices, 0, m, i, SEED_TAG);
+			communicator.recv(centroidBuffer, 0, 2 * m, i, SEED_TAG);
+			for(int c = 0; c < m; c++) {
+				centroids.add(new Point(centroidBuffer[2 * c], centroidBuffer[2 * c + 1]));
+			}
+			offset += portionSizes[i];
+		}
+	}
+
+        /**
+         * sendSeedCandidates:
+         * participant side of createInitialCentroids. Report the size of the local portion
+         * and send the co-ordinates of the points the master picked from it.
+         * @throws IOException
+         */
+	private void sendSeedCandidates() throws IOException {
+		
+		int[] count = {pointPortion.size()};
+		communicator.send(count, 0, 1, 0, SEED_TAG);
+		
+		int[] localIndices = new int[k];
+		MessageStatus status = communicator.recv(localIndices, 0, k, 0, SEED_TAG);
+		int m = status.getCount();
+		for(int c = 0; c < m; c++) {
+			centroidBuffer[2 * c] = pointPortion.getX(localIndices[c]);
+			centroidBuffer[2 * c + 1] = pointPortion.getY(localIndices[c]);
 		}
+		communicator.send(centroidBuffer, 0, 2 * m, 0, SEED_TAG);
 	}
 
         /**
@@ -88,46 +231,53 @@ public class PointParallelClustering {
          * Check the rank of the current process and accordingly perform master tasks or
          * participant tasks
          * @return: the final list of k centroids
-         * @throws MPIException
+         * @throws IOException
          */
-	public List<Point> performClustering() throws MPIException {
+	public List<Point> performClustering() throws IOException {
 		
 		if(myRank==0) {
 			/* This process is the master */
 			List<Point> oldCentroids; 
+			int iteration = 0;
+			double shift;
 			do {
 				oldCentroids = new ArrayList<Point>(centroids);
-                                /* send the centroids and DNAStrand portions to the participants */
-				sendToAllParticipantProcesses();
+                                /* send the centroids to the participants */
+				sendCentroidsToAllParticipantProcesses();
                                 /* receive intermedite/final results from the participants */
 				receiveFromAllParticipantProcesses();
                                 /* recalculate the centroid locations */
 				centroids = recalculateCentroidLocations();
-                                /* reset finalMap */
-				finalMap = null;
+                                /* reset finalSums */
+				finalSums = null;
+				shift = Point.totalShift(oldCentroids, centroids);
+				ClusteringOptions.reportIteration(++iteration, shift);
+                                /* move chunks to the participants that answered faster */
+				if(options.getScheduling() == Scheduling.dynamic) {
+					schedule.rebalance();
+				}
 				
-			} while(!oldCentroids.containsAll(centroids));
+			} while(iteration < options.getMaxIterations() && !options.isConverged(shift));
 			
 			/*
                         we are done with all the iterations. Send completion message to all the
                         participants
                          */
 			for(int i = 1; i < numberOfProcesses; i++) {
-				MPI.COMM_WORLD.Send(null, 0, 0, MPI.OBJECT, i, COMPLETED_TAG);
+				communicator.send(centroidBuffer, 0, 0, i, COMPLETED_TAG);
 			}
 
-                        /* Finalize MPI environment on the master */
-			MPI.Finalize();
 		}
 		
 		else {
+                        /* run in a while loop until Process-0 sends a completion message */
 			boolean cont = true;
 			while(cont) {			
 				cont = receiveFromMasterProcess();
 			}
 
-                        /* Finalize MPI environment on the master */
-			MPI.Finalize();
+                        /* stop the threads of the participant */
+			pool.shutdown();
 		}
 
                 /* return the final centroid list */
@@ -136,201 +286,125 @@ public class PointParallelClustering {
 
         /**
          * recalculateCentroidLocations:
-         * recalculate centroid locations based on intermediate results from participant processes
+         * recalculate centroid locations based on the per-cluster sums received
+         * from the participant processes
          * @return
          */
 	private List<Point> recalculateCentroidLocations() {
 
-                /* Get all the 2D points lists corresponding to every centroid */
-		Collection<List<Point>> lists = finalMap.values();
-                /* create temporary centroids list */
-		List<Point> tmpCentroids = new ArrayList<Point>();
-
-                /*
-                For every centroid list calculate the mean of x and y coordinates of all
-                 points in that list. This will be our new/recalculated centroid
-                 */
-		for(List<Point> lp : lists) {
-			
-			if(lp.size()==0) {
-				System.out.println("There exists a cluster centroid with no points"
-						+ " assigned to it. You may end up with fewer clusters than expected.");
-				continue; //cluster has no points
-			}
-			
-			double x = 0;
-			double y = 0;
-			
-			for(Point p : lp) {
-				x += p.getX();
-				y += p.getY();
-			}
-			x = x/(double) lp.size();
-			y = y/(double) lp.size();
-			
-			Point newCentroid = new Point(x, y);
-			tmpCentroids.add(newCentroid);
-		}
-		
-		return tmpCentroids;
+                /* the new centroid of every cluster is the mean of the points assigned to it */
+		return finalSums.computeCentroids(centroids);
 
 	}
 
         /**
          * receiveFromAllParticipantProcesses:
          * get intermediate/final result from the participant processes and merge all the
-         * results
-         * @throws MPIException
+         * results. The results are merged in the order they arrive, so a slow participant
+         * does not hold up the results that are already there. With tree reduction the
+         * participants have added up most of the results already and Process-0, taking part
+         * with no points, only adds the sums of its children in the tree.
+         * @throws IOException
          */
-	private void receiveFromAllParticipantProcesses() throws MPIException {
+	private void receiveFromAllParticipantProcesses() throws IOException {
 		
-		for(int idx=1;idx<numberOfProcesses;idx++) {	
-			Object[] result = new Object[1];	
-			MPI.COMM_WORLD.Recv(result, 0, 1, MPI.OBJECT, idx, RESULT_TAG);
-			HashMap<Point, List<Point>> map = (HashMap<Point, List<Point>>) result[0];
-			mergeMap(map);	
-		}
-		
-	}
-
-        /**
-         * sendToAllParticipantProcesses:
-         * Send centroids and portion of DNAStrands to the participant nodes
-         * @throws MPIException
-         */
-	private void sendToAllParticipantProcesses() throws MPIException {
+		finalSums = new PointClusterSums(centroids.size());
 		
-		for(int i=1;i<numberOfProcesses;i++) {
-			Object[] centroidArray = {centroids};
-			MPI.COMM_WORLD.Send(centroidArray, 0, centroidArray.length, MPI.OBJECT, i, CENTROID_TAG);
+		if(options.getReduction() == Reduction.tree) {
+			finalSums.copyTo(resultBuffer);
+			TreeReduction.reduce(communicator, resultBuffer, 3 * centroids.size(), reductionBuffer, RESULT_TAG);
+			finalSums.merge(resultBuffer);
+			communicator.waitAll(centroidRequests);
+			return;
 		}
 		
-		//now split the points and send
-		Object[] pointsArray = points.toArray();
-		int i = 1;
-		int offset = 0;
-		int count = splitSize;
-                /* perform the splitting of points based on splitSize */
-		while (offset + count <= pointsArray.length) {
-			MPI.COMM_WORLD.Send(pointsArray, offset, count, MPI.OBJECT, i, POINT_PORTION_TAG);
-			i++;
-			offset = offset + count;
-		}
-
-                /* send points which might be remaining from the last split */
-		if (offset < pointsArray.length) {
-			count = pointsArray.length - offset;
-			MPI.COMM_WORLD.Send(pointsArray, offset, count, MPI.OBJECT, i, POINT_PORTION_TAG);
+		for(int received = 1; received < numberOfProcesses; received++) {
+			MessageStatus status = communicator.waitAny(resultRequests);
+			schedule.finished(status.getIndex() + 1);
+			finalSums.merge(resultBuffers[status.getIndex() + 1]);
 		}
+                /* the centroid buffer may be reused once all the centroids have gone out */
+		communicator.waitAll(centroidRequests);
 		
 	}
 
         /**
-         * mergeMap:
-         * add the points received from the participants to the finalMap
-         * @param map
+         * sendCentroidsToAllParticipantProcesses:
+         * Send the current centroids to the participant nodes as (x, y) pairs. The receives of
+         * their results are posted first and nothing waits for the sends to complete.
+         * Participants whose chunks changed are told their new chunks first.
+         * @throws IOException
          */
-	private void mergeMap(HashMap<Point, List<Point>> map) {
+	private void sendCentroidsToAllParticipantProcesses() throws IOException {
 		
-		if(finalMap == null) {
-			finalMap = new HashMap<Point, List<Point>>();
-			for(Point centroid : centroids) {
-				finalMap.put(centroid, new ArrayList<Point>());
-			}
+		schedule.startIteration();
+
+		for(int c = 0; c < centroids.size(); c++) {
+			centroidBuffer[2 * c] = centroids.get(c).getX();
+			centroidBuffer[2 * c + 1] = centroids.get(c).getY();
 		}
 		
-		for(Point centroid : centroids) {
-			List<Point> pointsToBeAdded = map.get(centroid);
-			if(pointsToBeAdded != null) {
-				finalMap.get(centroid).addAll(pointsToBeAdded);			
+		for(int i=1;i<numberOfProcesses && options.getReduction() == Reduction.direct;i++) {
+			resultRequests[i - 1] = communicator.irecv(resultBuffers[i], 0, 3 * centroids.size(), i, RESULT_TAG);
+		}
+		for(int i=1;i<numberOfProcesses;i++) {
+			if(schedule.hasChanged(i)) {
+				int[] chunks = schedule.getChunks(i);
+				communicator.send(chunks, 0, chunks.length, i, SCHEDULE_TAG);
 			}
 		}
-
+		for(int i=1;i<numberOfProcesses;i++) {
+			centroidRequests[i - 1] = communicator.isend(centroidBuffer, 0, 2 * centroids.size(), i, CENTROID_TAG);
+		}
+		
 	}
 
         /**
          * receiveFromMasterProcess:
-         * receive centroids / points Portions / Completed message from the Process-0
+         * receive centroids / Completed message from the Process-0 and reply with the
+         * per-cluster sums of the locally held point portion. With dynamic scheduling the
+         * centroids may be preceded by the new chunks of this participant.
          * @return
-         * @throws MPIException
+         * @throws IOException
          */
-	private boolean receiveFromMasterProcess() throws MPIException {
+	private boolean receiveFromMasterProcess() throws IOException {
 		
-		Status status;
+		MessageStatus status;
 		boolean cont = true;
 		
-		Object[] centroidArray = new Object[1];
-		status = MPI.COMM_WORLD.Recv(centroidArray, 0, 1, MPI.OBJECT, 0, MPI.ANY_TAG);
-		if (status.tag == COMPLETED_TAG) {
-			cont = false;
-			return cont;
-		} else if (status.tag == CENTROID_TAG) {
-                        /* store centroid list */
-			List<Point> centroidList = (List<Point>) centroidArray[0];
-	                Object[] pointsArray = new Object[splitSize];
-                        /* receive portions */
-	                status = MPI.COMM_WORLD.Recv(pointsArray, 0, splitSize, MPI.OBJECT, 0, MPI.ANY_TAG);
-	                if (status.tag == COMPLETED_TAG) {
-			        cont = false;
-				return cont;
-			} else if (status.tag == POINT_PORTION_TAG) {
-				List<Point> pointPortionList = convertArrayToList(pointsArray);
-		                HashMap<Point, List<Point>> centroidToPoints = makeCentroidToPointsMap(centroidList, pointPortionList);
-		                Object[] resultObj = {centroidToPoints};
-		                MPI.COMM_WORLD.Send(resultObj, 0, 1, MPI.OBJECT, 0, RESULT_TAG);
-			}   
+		if(options.getScheduling() == Scheduling.dynamic
+				&& communicator.probe(0, Communicator.ANY_TAG).getTag() == SCHEDULE_TAG) {
+			int[] chunks = new int[numberOfChunks];
+			status = communicator.recv(chunks, 0, numberOfChunks, 0, SCHEDULE_TAG);
+			loadChunks(chunks, status.getCount());
 		}
 
-		return cont;
-	}
-
-	private List<Point> convertArrayToList(Object[] array) {
-		List<Point> list = new ArrayList<Point>();
-		for(Object obj : array) {
-			if(obj!=null) {
-				list.add((Point) obj);
+		status = communicator.recv(centroidBuffer, 0, centroidBuffer.length, 0, Communicator.ANY_TAG);
+		if (status.getTag() == COMPLETED_TAG) {
+			cont = false;
+			return cont;
+		} else if (status.getTag() == CENTROID_TAG) {
+                        /* rebuild the centroid list from the received (x, y) pairs */
+			int numberOfCentroids = status.getCount() / 2;
+			List<Point> centroidList = new ArrayList<Point>();
+			for(int c = 0; c < numberOfCentroids; c++) {
+				centroidList.add(new Point(centroidBuffer[2 * c], centroidBuffer[2 * c + 1]));
 			}
-		}
-		return list;
-	}
-
-        /**
-         * makeCentroidToPointsMap:
-         * Construct a hashmap between centroids and 2D points based on the distances between them
-         * @param centroidList
-         * @param pointPortionList
-         * @return
-         */
-	private HashMap<Point, List<Point>> makeCentroidToPointsMap(List<Point> centroidList, List<Point> pointPortionList) {
-		
-		HashMap<Point, List<Point>> centroidToPoints = new HashMap<Point, List<Point>>();
-		
-		for(Point centroid : centroidList) {
-			centroidToPoints.put(centroid, new ArrayList<Point>());
-		}
-		
-		for(Point p : pointPortionList) {
-			
-			double minDistance = Double.MAX_VALUE;
-			Point tmpCentroid = null;
-			
-			for(Point centroid : centroidList) {
-				
-				double distance = p.distance(centroid);
-				
-				if(distance < minDistance) {
-					minDistance = distance;
-					tmpCentroid = centroid;					
-				}
-				
+                        /*
+                        Assign every 2D point of the portion to its nearest centroid and accumulate the
+                        per-cluster sums of co-ordinates and point counts. Only these k sums are sent back
+                        to Process-0, not the points themselves.
+                         */
+			PointClusterSums sums = assignment.computeClusterSums(centroidList);
+			sums.copyTo(resultBuffer);
+			if(options.getReduction() == Reduction.tree) {
+				TreeReduction.reduce(communicator, resultBuffer, 3 * numberOfCentroids, reductionBuffer, RESULT_TAG);
+			} else {
+				communicator.send(resultBuffer, 0, 3 * numberOfCentroids, 0, RESULT_TAG);
 			}
-			
-			centroidToPoints.get(tmpCentroid).add(p);
-			
 		}
-		
-		return centroidToPoints;
-		
+
+		return cont;
 	}
 
 }
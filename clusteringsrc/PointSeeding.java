@@ -0,0 +1,98 @@
+/**
+ * PointSeeding:
+ * Chooses the initial centroids of the 2D point engines (see Seeding).
+ * chooseCentroids works on points held by one process. chooseKMeansParallel
+ * is called by every process of a Communicator with its own portion and
+ * combines the processes with collective operations. Both are the ones of
+ * Seeder; a point travels as the bits of its two co-ordinates.
+ */
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+
+public class PointSeeding {
+
+	private static final Seeder<PointSet, Point> SEEDER = new Points();
+
+	private PointSeeding() {
+	}
+
+        /**
+         * chooseCentroids:
+         * choose k initial centroids from points held by this process
+         * @param seeding
+         * @param points
+         * @param k
+         * @param rand
+         * @return
+         */
+	public static List<Point> chooseCentroids(Seeding seeding, PointSet points, int k, Random rand) {
+		return SEEDER.chooseCentroids(seeding, points, k, rand);
+	}
+
+        /**
+         * chooseKMeansParallel:
+         * k-means||, called by every process with its own portion (which may be empty),
+         * see Seeder.chooseKMeansParallel
+         * @param communicator: the processes taking part
+         * @param portion
+         * @param k
+         * @param rand
+         * @return the same k centroids on every process
+         * @throws IOException
+         */
+	public static List<Point> chooseKMeansParallel(Communicator communicator, PointSet portion, int k, Random rand) throws IOException {
+		return SEEDER.chooseKMeansParallel(communicator, portion, k, rand);
+	}
+
+        /**
+         * Points:
+         * the points of a PointSet as items of a Seeder
+         */
+	private static class Points extends Seeder<PointSet, Point> {
+
+		Points() {
+			super("points");
+		}
+
+		@Override
+		protected int size(PointSet points) {
+			return points.size();
+		}
+
+		@Override
+		protected double squaredDistance(PointSet points, int i, PointSet others, int j) {
+			double dx = others.getX(j) - points.getX(i);
+			double dy = others.getY(j) - points.getY(i);
+			return dx * dx + dy * dy;
+		}
+
+		@Override
+		protected Point centroid(PointSet points, int i) {
+			return points.getPoint(i);
+		}
+
+		@Override
+		protected PointSet newItems() {
+			return new PointSet();
+		}
+
+		@Override
+		protected int wordsPerItem() {
+			return 2;
+		}
+
+		@Override
+		protected void toWords(PointSet points, int i, long[] words, int offset) {
+			words[offset] = Double.doubleToRawLongBits(points.getX(i));
+			words[offset + 1] = Double.doubleToRawLongBits(points.getY(i));
+		}
+
+		@Override
+		protected void addFromWords(PointSet points, long[] words, int offset) {
+			points.add(Double.longBitsToDouble(words[offset]), Double.longBitsToDouble(words[offset + 1]));
+		}
+	}
+
+}
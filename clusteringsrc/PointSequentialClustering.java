@@ -1,7 +1,3 @@
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 
@@ -9,101 +5,48 @@ import java.util.Random;
 public class PointSequentialClustering {
 
 	private int k;
-	private List<Point> points;
+	private PointSet points;
+	private PointAssigner assigner;
+	private Seeding seeding;
+	private ClusteringOptions options;
 	
-	public PointSequentialClustering(int k, List<Point> points) {
+	public PointSequentialClustering(int k, PointSet points, ClusteringOptions options) {
 		this.k = k;
 		this.points = points;
+		assigner = PointAssigner.create(options.getAssignment(), points);
+		seeding = options.getSeeding();
+		this.options = options;
 	}
 
 	public List<Point> performClustering() {
-		List<Point> centroids = new ArrayList<Point>();
+		List<Point> centroids = PointSeeding.chooseCentroids(seeding, points, k, new Random());
 		List<Point> oldCentroids;
-		HashMap<Point, List<Point>> centroidToPoints;
-		Random rand = new Random();
-
-		for(int i=0;i<k;i++) {
-			int index = rand.nextInt(points.size());
-			Point p = (Point) points.get(index).clone();
-			
-			while(centroids.contains(p)) {
-				index = rand.nextInt(points.size());
-				p = (Point) points.get(index).clone();
-			}
-			
-			centroids.add(p);
-			
-		}
+                /* index of the centroid every point is assigned to */
+		int[] assignments = new int[points.size()];
+		int iteration = 0;
+		double shift;
 		
 		do {
-			centroidToPoints = makeCentroidToPointsMap(centroids);
+			assigner.assign(centroids, assignments);
+			oldCentroids = centroids;
+			centroids = recalculateCentroidLocations(centroids, assignments);
+			shift = Point.totalShift(oldCentroids, centroids);
+			ClusteringOptions.reportIteration(++iteration, shift);
 			
-			for(Point p : points) {
-				
-				double minDistance = Double.MAX_VALUE;
-				Point tmpCentroid = null;
-				
-				for(Point centroid : centroids) {
-					
-					double distance = p.distance(centroid);
-					
-					if(distance < minDistance) {
-						minDistance = distance;
-						tmpCentroid = centroid;					
-					}
-					
-				}
-				
-				centroidToPoints.get(tmpCentroid).add(p);
-				
-			}
-			oldCentroids = new ArrayList<Point>(centroids);
-			centroids = recalculateCentroidLocations(centroidToPoints);
-			
-		} while(!oldCentroids.containsAll(centroids));
+		} while(iteration < options.getMaxIterations() && !options.isConverged(shift));
 		
 		return centroids;
 	}
 	
-	private List<Point> recalculateCentroidLocations(HashMap<Point, List<Point>> centroidToPoints) {
+	private List<Point> recalculateCentroidLocations(List<Point> centroids, int[] assignments) {
 		
-		Collection<List<Point>> lists = centroidToPoints.values();
-		List<Point> centroids = new ArrayList<Point>();
+		PointClusterSums sums = new PointClusterSums(centroids.size());
 		
-		for(List<Point> lp : lists) {
-			
-			if(lp.size()==0) {
-				System.out.println("There exists a cluster centroid with no points"
-						+ " assigned to it. You may end up with fewer clusters than expected.");
-				continue;
-			}
-			
-			double x = 0;
-			double y = 0;
-			
-			for(Point p : lp) {
-				x += p.getX();
-				y += p.getY();
-			}
-			x = x/(double) lp.size();
-			y = y/(double) lp.size();
-			
-			Point newCentroid = new Point(x, y);
-			centroids.add(newCentroid);
-		}
-		
-		return centroids;
-	}
-
-	public HashMap<Point, List<Point>> makeCentroidToPointsMap(List<Point> centroids) {
-		HashMap<Point, List<Point>> centroidToPoints = new HashMap<Point, List<Point>>();
-		
-		for(Point centroid : centroids) {
-			centroidToPoints.put(centroid, new ArrayList<Point>());
+		for(int i = 0; i < points.size(); i++) {
+			sums.add(assignments[i], points.getX(i), points.getY(i));
 		}
 		
-		return centroidToPoints;
+		return sums.computeCentroids(centroids);
 	}
-	
 
 }
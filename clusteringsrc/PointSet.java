@@ -0,0 +1,105 @@
+/**
+ * PointSet:
+ * This class stores a collection of 2D points column-wise.
+ * The x and y co-ordinates of all the points live in two contiguous
+ * primitive arrays, so a set of n points costs 2 * n doubles instead of
+ * n Point objects. Points are addressed by their index in the set.
+ */
+import java.util.Arrays;
+
+
+public class PointSet {
+
+        /* initial capacity used when the number of points is not known up front */
+	private static final int DEFAULT_CAPACITY = 1024;
+
+        /* The x and y co-ordinates of all the points */
+	private double[] xs;
+	private double[] ys;
+        /* number of points stored in the set */
+	private int size;
+
+	public PointSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+        /**
+         * PointSet: Constructor
+         * wrap already filled co-ordinate arrays, the first size entries are the points
+         * @param xs
+         * @param ys
+         * @param size
+         */
+	public PointSet(double[] xs, double[] ys, int size) {
+		this.xs = xs;
+		this.ys = ys;
+		this.size = size;
+	}
+
+	public PointSet(int capacity) {
+		xs = new double[Math.max(capacity, 1)];
+		ys = new double[Math.max(capacity, 1)];
+		size = 0;
+	}
+
+        /**
+         * add:
+         * append a point to the set, growing the backing arrays if required
+         * @param x
+         * @param y
+         */
+	public void add(double x, double y) {
+		if(size == xs.length) {
+			int newCapacity = xs.length * 2;
+			xs = Arrays.copyOf(xs, newCapacity);
+			ys = Arrays.copyOf(ys, newCapacity);
+		}
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getX(int index) {
+		return xs[index];
+	}
+
+	public double getY(int index) {
+		return ys[index];
+	}
+
+        /* the backing x co-ordinate array, only the first size() entries are valid */
+	public double[] getXs() {
+		return xs;
+	}
+
+        /* the backing y co-ordinate array, only the first size() entries are valid */
+	public double[] getYs() {
+		return ys;
+	}
+
+        /**
+         * getPoint:
+         * materialise a single point of the set as a Point object
+         * @param index
+         * @return
+         */
+	public Point getPoint(int index) {
+		return new Point(xs[index], ys[index]);
+	}
+
+        /**
+         * addAll:
+         * append all the points of another set to this set
+         * @param other
+         */
+	public void addAll(PointSet other) {
+		for(int i = 0; i < other.size(); i++) {
+			add(other.getX(i), other.getY(i));
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+/**
+ * PointThreadedClustering: Implements the logic for the shared-memory
+ * multi-threaded version of K-means algorithm on 2D points. A single process
+ * holds all the points, the assignment step and the cluster sums are computed
+ * by a fork/join pool (see ForkJoinPointAssignment).
+ */
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+public class PointThreadedClustering {
+
+	private int k;
+	private PointSet points;
+	private ClusteringOptions options;
+
+	public PointThreadedClustering(int k, PointSet points, ClusteringOptions options) {
+		this.k = k;
+		this.points = points;
+		this.options = options;
+	}
+
+        /**
+         * performClustering:
+         * Step-1: Choose the initial k centroids (see Seeding).
+         * Step-2: Let the threads assign the points and sum up every cluster.
+         * Step-3: Recalculate the centroid locations from the merged sums
+         * Repeat Steps 2 and 3 until the centroids move at most epsilon in total, at most
+         * for the maximum number of iterations
+         * @return
+         */
+	public List<Point> performClustering() {
+		List<Point> centroids = PointSeeding.chooseCentroids(options.getSeeding(), points, k, new Random());
+		List<Point> oldCentroids;
+		int iteration = 0;
+		double shift;
+
+		ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+		try {
+			ForkJoinPointAssignment assignment = new ForkJoinPointAssignment(points, options.getAssignment(), pool);
+			do {
+				oldCentroids = centroids;
+				centroids = assignment.computeClusterSums(centroids).computeCentroids(centroids);
+				shift = Point.totalShift(oldCentroids, centroids);
+				ClusteringOptions.reportIteration(++iteration, shift);
+
+			} while(iteration < options.getMaxIterations() && !options.isConverged(shift));
+		} finally {
+			pool.shutdown();
+		}
+
+		return centroids;
+	}
+
+}
@@ -0,0 +1,10 @@
+/**
+ * Reduction: how the participants of the parallel mode get their partial
+ * results to Process-0. direct has every participant send its result to
+ * Process-0, which merges them one by one. tree adds the partial results up
+ * pairwise along a binomial tree (see TreeReduction), so Process-0 receives
+ * only log2(p) messages.
+ */
+public enum Reduction {
+	direct, tree
+}
@@ -0,0 +1,10 @@
+/**
+ * Scheduling: how the input is shared among the participants of the parallel
+ * mode. fixed gives every participant one equal part for the whole run.
+ * dynamic cuts the input into many smaller chunks and lets Process-0 move
+ * chunks from slow to fast participants, based on how long every participant
+ * took in the previous iterations (see ChunkSchedule).
+ */
+public enum Scheduling {
+	fixed, dynamic
+}
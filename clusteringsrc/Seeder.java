@@ -0,0 +1,368 @@
+/**
+ * Seeder:
+ * Chooses initial centroids (see Seeding) from a set of items S, whatever the
+ * items are. chooseRandom and chooseKMeansPlusPlus work on items held by one
+ * process. chooseKMeansParallel is called by every process of a Communicator
+ * with its own portion and combines the processes with collective operations;
+ * items travel between the processes as longs (see toWords). PointSeeding
+ * and DNASeeding say what the items are, how far apart two of them are and
+ * how a centroid is made of one.
+ * @param <S> a set of items, addressed by index
+ * @param <T> a centroid
+ */
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+
+public abstract class Seeder<S, T> {
+
+        /* number of sampling rounds of k-means|| */
+	private static final int ROUNDS = 5;
+        /* expected number of candidates sampled per round, as a multiple of k */
+	private static final int OVERSAMPLING = 2;
+
+        /* what the items are called in error messages, e.g. "points" */
+	private String itemName;
+
+	protected Seeder(String itemName) {
+		this.itemName = itemName;
+	}
+
+	protected abstract int size(S items);
+
+        /* squared distance of item i of items from item j of others */
+	protected abstract double squaredDistance(S items, int i, S others, int j);
+
+        /* a centroid at item i of items, which does not change with the item */
+	protected abstract T centroid(S items, int i);
+
+        /* a new empty set of items */
+	protected abstract S newItems();
+
+        /* number of longs an item travels as */
+	protected abstract int wordsPerItem();
+
+        /* write item i of items into words from offset on */
+	protected abstract void toWords(S items, int i, long[] words, int offset);
+
+        /* add the item written by toWords at offset of words to items */
+	protected abstract void addFromWords(S items, long[] words, int offset);
+
+        /**
+         * chooseCentroids:
+         * choose k initial centroids from items held by this process
+         * @param seeding
+         * @param items
+         * @param k
+         * @param rand
+         * @return
+         */
+	public List<T> chooseCentroids(Seeding seeding, S items, int k, Random rand) {
+		if(seeding == Seeding.kmeansplusplus) {
+			return chooseKMeansPlusPlus(items, k, rand);
+		}
+		return chooseRandom(items, k, rand);
+	}
+
+        /**
+         * chooseRandom:
+         * choose k distinct items uniformly at random. Positions are drawn without
+         * replacement, so this ends after at most one pass over the items even when fewer
+         * than k of them are distinct; the remaining centroids then repeat the last one
+         * (their clusters stay empty), as in chooseKMeansPlusPlus.
+         * @param items
+         * @param k
+         * @param rand
+         * @return
+         */
+	public List<T> chooseRandom(S items, int k, Random rand) {
+		List<T> centroids = new ArrayList<T>();
+		HashSet<T> chosen = new HashSet<T>();
+		int n = size(items);
+		checkNotEmpty(n);
+                /* the positions moved by the shuffle so far, see draw */
+		HashMap<Integer, Integer> moved = new HashMap<Integer, Integer>();
+
+		for(int drawn = 0; drawn < n && centroids.size() < k; drawn++) {
+			T centroid = centroid(items, draw(moved, drawn, n, rand));
+			if(chosen.add(centroid)) {
+				centroids.add(centroid);
+			}
+		}
+		while(centroids.size() < k) {
+			centroids.add(centroids.get(centroids.size() - 1));
+		}
+		return centroids;
+	}
+
+        /**
+         * chooseKMeansPlusPlus:
+         * k-means++ on items of weight 1 (see kMeansPlusPlus)
+         * @param items
+         * @param k
+         * @param rand
+         * @return
+         */
+	public List<T> chooseKMeansPlusPlus(S items, int k, Random rand) {
+		int[] chosen = kMeansPlusPlus(items, null, k, rand);
+		List<T> centroids = new ArrayList<T>();
+		for(int c = 0; c < k; c++) {
+			centroids.add(centroid(items, chosen[c]));
+		}
+		return centroids;
+	}
+
+        /**
+         * kMeansPlusPlus:
+         * k-means++. The first centroid is chosen uniformly, every next one with a probability
+         * proportional to weight * squared distance from the nearest centroid chosen so far.
+         * Items that coincide with a chosen centroid are never chosen again, unless all the
+         * items do, in which case the remaining centroids repeat the last one (their clusters
+         * stay empty).
+         * @param items
+         * @param weights: weight of every item, null for weight 1
+         * @param k
+         * @param rand
+         * @return the index in items of every centroid
+         */
+	private int[] kMeansPlusPlus(S items, double[] weights, int k, Random rand) {
+		int[] chosen = new int[k];
+		int n = size(items);
+		checkNotEmpty(n);
+                /* weight * squared distance of every item from its nearest chosen centroid */
+		double[] cost = new double[n];
+
+		int index = (weights == null) ? rand.nextInt(n) : sample(weights, total(weights, n), n, rand);
+		for(int i = 0; i < n; i++) {
+			cost[i] = Double.POSITIVE_INFINITY;
+		}
+		for(int c = 0; ; c++) {
+			chosen[c] = index;
+			if(c + 1 == k) {
+				return chosen;
+			}
+
+			double totalCost = 0;
+			for(int i = 0; i < n; i++) {
+				double d = squaredDistance(items, i, items, index);
+				if(weights != null) {
+					d *= weights[i];
+				}
+				if(d < cost[i]) {
+					cost[i] = d;
+				}
+				totalCost += cost[i];
+			}
+			if(totalCost > 0) {
+				index = sample(cost, totalCost, n, rand);
+			}
+		}
+	}
+
+        /**
+         * chooseKMeansParallel:
+         * k-means||, called by every process with its own portion (which may be empty).
+         * Process-0 picks the first candidate uniformly from the whole input. In every round
+         * each process samples its items with probability OVERSAMPLING * k * d^2 / cost, where
+         * d is the distance from the nearest candidate and cost the sum of d^2 over all the
+         * processes, and the samples are exchanged with an Allgather. Finally every candidate is
+         * weighted by the number of items nearest to it, and Process-0 reduces the candidates
+         * to k centroids with k-means++ and broadcasts which candidates they are.
+         * @param communicator: the processes taking part
+         * @param portion
+         * @param k
+         * @param rand
+         * @return the same k centroids on every process
+         * @throws IOException
+         */
+	public List<T> chooseKMeansParallel(Communicator communicator, S portion, int k, Random rand) throws IOException {
+		int numberOfProcesses = communicator.getSize();
+		int myRank = communicator.getRank();
+		int words = wordsPerItem();
+		int n = size(portion);
+
+                /* the first candidate: Process-0 picks a position in the whole input, its owner fills it in */
+		int[] portionSize = {n};
+		int[] portionSizes = new int[numberOfProcesses];
+		communicator.allgather(portionSize, 1, portionSizes);
+		long numberOfItems = 0;
+		long myOffset = 0;
+		for(int i = 0; i < numberOfProcesses; i++) {
+			if(i < myRank) {
+				myOffset += portionSizes[i];
+			}
+			numberOfItems += portionSizes[i];
+		}
+		if(numberOfItems == 0) {
+			throw new IllegalArgumentException("Can not choose centroids, no process holds any " + itemName);
+		}
+		long[] first = new long[1];
+		if(myRank==0) {
+			first[0] = (long) (rand.nextDouble() * numberOfItems);
+		}
+		communicator.bcast(first, 0, 1, 0);
+		long[] firstWords = new long[words];
+		if(first[0] >= myOffset && first[0] < myOffset + n) {
+			toWords(portion, (int) (first[0] - myOffset), firstWords, 0);
+		}
+		long[] firstCandidate = new long[words];
+		communicator.allreduceSum(firstWords, firstCandidate, words);
+
+		S candidates = newItems();
+		addFromWords(candidates, firstCandidate, 0);
+                /* squared distance of every local item from its nearest candidate, and that candidate */
+		double[] cost = new double[n];
+		int[] nearest = new int[n];
+		for(int i = 0; i < n; i++) {
+			cost[i] = Double.POSITIVE_INFINITY;
+		}
+		double totalCost = updateCosts(communicator, portion, candidates, 0, cost, nearest);
+
+		for(int round = 0; round < ROUNDS && totalCost > 0; round++) {
+			List<Integer> sampled = new ArrayList<Integer>();
+			double factor = (double) OVERSAMPLING * k / totalCost;
+			for(int i = 0; i < n; i++) {
+				if(rand.nextDouble() < factor * cost[i]) {
+					sampled.add(i);
+				}
+			}
+			int firstNew = size(candidates);
+			allgather(communicator, portion, sampled, candidates, numberOfProcesses);
+			totalCost = updateCosts(communicator, portion, candidates, firstNew, cost, nearest);
+		}
+
+                /* weight of a candidate = number of items, over all the processes, nearest to it */
+		double[] localWeights = new double[size(candidates)];
+		for(int i = 0; i < n; i++) {
+			localWeights[nearest[i]]++;
+		}
+		double[] weights = new double[size(candidates)];
+		communicator.allreduceSum(localWeights, weights, weights.length);
+
+                /* every process holds the same candidates, so only their indices are broadcast */
+		int[] chosen = new int[k];
+		if(myRank==0) {
+			chosen = kMeansPlusPlus(candidates, weights, k, rand);
+		}
+		communicator.bcast(chosen, 0, k, 0);
+
+		List<T> centroids = new ArrayList<T>();
+		for(int c = 0; c < k; c++) {
+			centroids.add(centroid(candidates, chosen[c]));
+		}
+		return centroids;
+	}
+
+        /**
+         * updateCosts:
+         * lower the cost and nearest candidate of every local item with the candidates from
+         * firstNew on
+         * @return the sum of the costs over all the processes
+         * @throws IOException
+         */
+	private double updateCosts(Communicator communicator, S portion, S candidates, int firstNew,
+			double[] cost, int[] nearest) throws IOException {
+		double[] localCost = new double[1];
+		for(int i = 0; i < size(portion); i++) {
+			for(int c = firstNew; c < size(candidates); c++) {
+				double d = squaredDistance(portion, i, candidates, c);
+				if(d < cost[i]) {
+					cost[i] = d;
+					nearest[i] = c;
+				}
+			}
+			localCost[0] += cost[i];
+		}
+		double[] totalCost = new double[1];
+		communicator.allreduceSum(localCost, totalCost, 1);
+		return totalCost[0];
+	}
+
+        /**
+         * allgather:
+         * add the items sampled by all the processes to candidates, in rank order. The
+         * processes sample different numbers of items, so every process sends a block of
+         * the largest size and the counts tell which part of each block is used.
+         * @param sampled: indices of the items of portion this process sampled
+         * @throws IOException
+         */
+	private void allgather(Communicator communicator, S portion, List<Integer> sampled, S candidates,
+			int numberOfProcesses) throws IOException {
+		int words = wordsPerItem();
+		int[] count = {sampled.size()};
+		int[] counts = new int[numberOfProcesses];
+		communicator.allgather(count, 1, counts);
+		int blockSize = 0;
+		for(int i = 0; i < numberOfProcesses; i++) {
+			blockSize = Math.max(blockSize, counts[i]);
+		}
+
+		long[] block = new long[blockSize * words];
+		for(int i = 0; i < sampled.size(); i++) {
+			toWords(portion, sampled.get(i), block, i * words);
+		}
+		long[] blocks = new long[block.length * numberOfProcesses];
+		communicator.allgather(block, block.length, blocks);
+
+		for(int p = 0; p < numberOfProcesses; p++) {
+			for(int i = 0; i < counts[p]; i++) {
+				addFromWords(candidates, blocks, (p * blockSize + i) * words);
+			}
+		}
+	}
+
+	private void checkNotEmpty(int n) {
+		if(n == 0) {
+			throw new IllegalArgumentException("No " + itemName + " to choose the centroids from");
+		}
+	}
+
+	private static double total(double[] values, int n) {
+		double sum = 0;
+		for(int i = 0; i < n; i++) {
+			sum += values[i];
+		}
+		return sum;
+	}
+
+        /**
+         * draw:
+         * the next step of a Fisher-Yates shuffle of 0..n-1 that only remembers the positions it
+         * moved, so drawing a few of many positions costs no array of n
+         * @param moved: position to the index it holds, for the positions that hold another one
+         * @param drawn: the number of indices drawn so far
+         * @param n
+         * @param rand
+         * @return an index not drawn before, uniformly
+         */
+	private static int draw(HashMap<Integer, Integer> moved, int drawn, int n, Random rand) {
+		int position = drawn + rand.nextInt(n - drawn);
+		Integer index = moved.get(position);
+		Integer first = moved.remove(drawn);
+		if(position != drawn) {
+			moved.put(position, (first == null) ? drawn : first);
+		}
+		return (index == null) ? position : index;
+	}
+
+        /* index i chosen with probability values[i] / total */
+	private static int sample(double[] values, double total, int n, Random rand) {
+		double target = rand.nextDouble() * total;
+		int last = 0;
+		for(int i = 0; i < n; i++) {
+			if(values[i] > 0) {
+				target -= values[i];
+				last = i;
+				if(target < 0) {
+					return i;
+				}
+			}
+		}
+		return last;
+	}
+
+}
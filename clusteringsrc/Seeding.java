@@ -0,0 +1,11 @@
+/**
+ * Seeding: how the initial centroids are chosen. random picks k distinct
+ * input items uniformly. kmeansplusplus picks every next centroid with a
+ * probability proportional to its squared distance from the centroids chosen
+ * so far (k-means++). In the MPI modes, where no process holds all the input,
+ * it runs the oversampling variant k-means||: a few rounds sample many
+ * candidates at once, then k-means++ on the weighted candidates picks k.
+ */
+public enum Seeding {
+	random, kmeansplusplus
+}
@@ -0,0 +1,392 @@
+/**
+ * SocketCommunicator:
+ * Communicator between JVMs connected by TCP, for running the distributed
+ * modes where no MPI is installed. Every process is started with the same
+ * host list (one host per line, like machines.txt) and a rank of its own:
+ * rank r runs on the r-th host of the list and listens on port + r, unless the
+ * host is given as host:port. So a list naming the same host several times
+ * runs several ranks on it. Every pair of ranks is connected once, the higher
+ * rank connecting to the lower one. launchSocketClustering.sh starts a rank
+ * for every host of the list.
+ *
+ * A message travels as one frame: the number of bytes that follow, the tag,
+ * the type of the elements and the elements, in network byte order. The
+ * header and the elements are sent with one gathering write from direct
+ * buffers, without serializing any objects. A thread per connection reads the
+ * frames and puts the messages in the mailbox of this rank (see
+ * MailboxCommunicator).
+ */
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class SocketCommunicator extends MailboxCommunicator {
+
+        /* how long (ms) a rank waits for the other ranks of the list to start */
+	private static final long CONNECT_TIMEOUT = 60000;
+	private static final long CONNECT_RETRY = 200;
+        /* bytes of a frame after its length that are not elements: the tag and the element type */
+	private static final int HEADER_SIZE = 5;
+        /* element types of a frame. END carries no elements, a rank sends it to every other one when it closes. */
+	private static final byte END = 0;
+	private static final byte INT = 1;
+	private static final byte LONG = 2;
+	private static final byte DOUBLE = 3;
+	private static final byte BYTE = 4;
+        /* initial size of the buffers frames are written from and read into, they grow for bigger frames */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+        /* the connections to the other ranks, by rank, null for this rank */
+	private Connection[] connections;
+
+	private SocketCommunicator(int rank, int size) {
+		super(rank, size);
+		connections = new Connection[size];
+	}
+
+        /**
+         * connect:
+         * connect this rank to all the other ranks of the host list
+         * @param hostFileName: the host list, one host or host:port per line
+         * @param rank: this rank, the line of the host list (0 based) that is this process
+         * @param port: port of rank 0, rank r listens on port + r unless the list says otherwise
+         * @return the communicator of this process
+         * @throws IOException
+         */
+	public static SocketCommunicator connect(String hostFileName, int rank, int port) throws IOException {
+		List<InetSocketAddress> addresses = readHosts(hostFileName, port);
+		if(rank < 0 || rank >= addresses.size()) {
+			throw new IllegalArgumentException("Rank " + rank + " is not in " + hostFileName
+					+ ", which lists " + addresses.size() + " hosts");
+		}
+		SocketCommunicator communicator = new SocketCommunicator(rank, addresses.size());
+		ServerSocketChannel server = ServerSocketChannel.open();
+		try {
+			server.socket().setReuseAddress(true);
+			server.bind(new InetSocketAddress(addresses.get(rank).getPort()), addresses.size());
+			for(int peer = 0; peer < rank; peer++) {
+				SocketChannel channel = connect(addresses.get(peer));
+				ByteBuffer hello = ByteBuffer.allocate(4);
+				hello.putInt(rank).flip();
+				while(hello.hasRemaining()) {
+					channel.write(hello);
+				}
+				communicator.open(peer, channel);
+			}
+			for(int i = rank + 1; i < addresses.size(); i++) {
+				SocketChannel channel = accept(server);
+				ByteBuffer hello = ByteBuffer.allocate(4);
+				while(hello.hasRemaining()) {
+					if(channel.read(hello) < 0) {
+						throw new EOFException("A rank closed its connection before saying which rank it is");
+					}
+				}
+				int peer = hello.getInt(0);
+				if(peer <= rank || peer >= addresses.size() || communicator.connections[peer] != null) {
+					channel.close();
+					throw new IOException("Unexpected connection from rank " + peer);
+				}
+				communicator.open(peer, channel);
+			}
+		} catch (IOException e) {
+			communicator.abort();
+			throw e;
+		} finally {
+			server.close();
+		}
+		return communicator;
+	}
+
+        /**
+         * readHosts:
+         * @param hostFileName
+         * @param port
+         * @return the address every rank listens on, by rank
+         * @throws IOException
+         */
+	private static List<InetSocketAddress> readHosts(String hostFileName, int port) throws IOException {
+		List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+		BufferedReader reader = new BufferedReader(new FileReader(hostFileName));
+		try {
+			String line;
+			while((line = reader.readLine()) != null) {
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				int separator = line.lastIndexOf(':');
+				if(separator < 0) {
+					addresses.add(new InetSocketAddress(line, port + addresses.size()));
+				} else {
+					addresses.add(new InetSocketAddress(line.substring(0, separator),
+							Integer.parseInt(line.substring(separator + 1))));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if(addresses.isEmpty()) {
+			throw new IOException("No hosts in " + hostFileName);
+		}
+		return addresses;
+	}
+
+        /* connect to a rank started before this one, waiting for it to listen if it is not yet */
+	private static SocketChannel connect(InetSocketAddress address) throws IOException {
+		long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+		while(true) {
+			try {
+				return SocketChannel.open(address);
+			} catch (ConnectException e) {
+				if(System.currentTimeMillis() > deadline) {
+					throw new IOException("Can not connect to " + address, e);
+				}
+			}
+			try {
+				Thread.sleep(CONNECT_RETRY);
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted while connecting to " + address, e);
+			}
+		}
+	}
+
+        /* accept the connection of a rank started after this one */
+	private static SocketChannel accept(ServerSocketChannel server) throws IOException {
+		server.configureBlocking(false);
+		Selector selector = Selector.open();
+		try {
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			SocketChannel channel = null;
+			long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+			while(channel == null) {
+				long remaining = deadline - System.currentTimeMillis();
+				if(remaining <= 0) {
+					throw new IOException("Timed out waiting for the other ranks to connect");
+				}
+				selector.select(remaining);
+				channel = server.accept();
+			}
+			channel.configureBlocking(true);
+			return channel;
+		} finally {
+			selector.close();
+		}
+	}
+
+        /* start exchanging messages with peer over channel */
+	private void open(int peer, SocketChannel channel) throws IOException {
+		channel.socket().setTcpNoDelay(true);
+		Connection connection = new Connection(peer, channel);
+		connections[peer] = connection;
+		connection.reader.start();
+	}
+
+	@Override
+	protected void deliver(int destination, int tag, Object buffer, int offset, int count) throws IOException {
+		connections[destination].write(tag, type(buffer), buffer, offset, count);
+	}
+
+        /**
+         * close:
+         * tell every other rank that this one is done and wait until every other rank is done
+         * as well, so that no message is lost when the connections close
+         * @throws IOException
+         */
+	public void close() throws IOException {
+		try {
+			for(Connection connection : connections) {
+				if(connection != null) {
+					connection.write(0, END, null, 0, 0);
+				}
+			}
+			for(Connection connection : connections) {
+				if(connection != null) {
+					connection.reader.join();
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while waiting for the other ranks to close", e);
+		} finally {
+			abort();
+		}
+	}
+
+        /**
+         * abort:
+         * close all the connections at once, so that the other ranks do not wait for this one
+         * when it failed
+         */
+	public void abort() {
+		for(Connection connection : connections) {
+			if(connection != null) {
+				try {
+					connection.channel.close();
+				} catch (IOException e) {
+                                        /* closing anyway */
+				}
+			}
+		}
+	}
+
+	private static byte type(Object buffer) {
+		if(buffer instanceof int[]) {
+			return INT;
+		} else if(buffer instanceof long[]) {
+			return LONG;
+		} else if(buffer instanceof double[]) {
+			return DOUBLE;
+		} else if(buffer instanceof byte[]) {
+			return BYTE;
+		}
+		throw new IllegalArgumentException("Unsupported buffer type " + buffer.getClass().getName());
+	}
+
+	private static int elementSize(byte type) {
+		switch(type) {
+		case INT:
+			return 4;
+		case LONG:
+		case DOUBLE:
+			return 8;
+		case BYTE:
+			return 1;
+		default:
+			return 0;
+		}
+	}
+
+        /**
+         * Connection:
+         * the channel to one other rank, with the buffers of the frames written to it and a
+         * thread that reads the frames coming from it
+         */
+	private class Connection implements Runnable {
+
+		private int peer;
+		private SocketChannel channel;
+		private Thread reader;
+		private ByteBuffer header = ByteBuffer.allocateDirect(4 + HEADER_SIZE);
+		private ByteBuffer output = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private ByteBuffer input = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		Connection(int peer, SocketChannel channel) {
+			this.peer = peer;
+			this.channel = channel;
+			input.limit(0);
+			reader = new Thread(this, "rank-" + getRank() + "-from-" + peer);
+			reader.setDaemon(true);
+		}
+
+                /* send count elements of buffer from offset on as one frame */
+		synchronized void write(int tag, byte type, Object buffer, int offset, int count) throws IOException {
+			int bytes = count * elementSize(type);
+			if(output.capacity() < bytes) {
+				output = ByteBuffer.allocateDirect(bytes);
+			}
+			output.clear();
+			switch(type) {
+			case INT:
+				output.asIntBuffer().put((int[]) buffer, offset, count);
+				break;
+			case LONG:
+				output.asLongBuffer().put((long[]) buffer, offset, count);
+				break;
+			case DOUBLE:
+				output.asDoubleBuffer().put((double[]) buffer, offset, count);
+				break;
+			case BYTE:
+				output.put((byte[]) buffer, offset, count);
+				break;
+			}
+			output.position(0).limit(bytes);
+			header.clear();
+			header.putInt(HEADER_SIZE + bytes).putInt(tag).put(type).flip();
+
+			ByteBuffer[] frame = { header, output };
+			while(output.hasRemaining() || header.hasRemaining()) {
+				channel.write(frame);
+			}
+		}
+
+                /* read the frames of peer until it closes */
+		public void run() {
+			try {
+				while(true) {
+					fill(4 + HEADER_SIZE);
+					int bytes = input.getInt() - HEADER_SIZE;
+					int tag = input.getInt();
+					byte type = input.get();
+					if(type == END) {
+						return;
+					}
+					fill(bytes);
+					arrived(new Message(peer, tag, read(type, bytes)));
+				}
+			} catch (IOException e) {
+				fail(new IOException("Lost the connection to rank " + peer, e));
+			}
+		}
+
+                /* the elements of a frame of bytes bytes, which are all in input */
+		private Object read(byte type, int bytes) throws IOException {
+			Object data;
+			switch(type) {
+			case INT:
+				int[] ints = new int[bytes / 4];
+				input.asIntBuffer().get(ints);
+				data = ints;
+				break;
+			case LONG:
+				long[] longs = new long[bytes / 8];
+				input.asLongBuffer().get(longs);
+				data = longs;
+				break;
+			case DOUBLE:
+				double[] doubles = new double[bytes / 8];
+				input.asDoubleBuffer().get(doubles);
+				data = doubles;
+				break;
+			case BYTE:
+				byte[] bytesRead = new byte[bytes];
+				input.get(bytesRead);
+				return bytesRead;
+			default:
+				throw new IOException("Unknown element type " + type + " in a frame from rank " + peer);
+			}
+			input.position(input.position() + bytes);
+			return data;
+		}
+
+                /* read from the channel until input holds at least needed bytes */
+		private void fill(int needed) throws IOException {
+			if(input.remaining() >= needed) {
+				return;
+			}
+			if(input.capacity() < needed) {
+				ByteBuffer bigger = ByteBuffer.allocateDirect(needed);
+				bigger.put(input);
+				input = bigger;
+			} else {
+				input.compact();
+			}
+			while(input.position() < needed) {
+				if(channel.read(input) < 0) {
+					throw new EOFException("Rank " + peer + " closed its connection");
+				}
+			}
+			input.flip();
+		}
+	}
+
+}
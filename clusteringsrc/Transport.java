@@ -0,0 +1,12 @@
+/**
+ * Transport: how the processes of the parallel and collective modes exchange
+ * messages. mpi runs one process per rank under mpirun with mpiJava
+ * (see MPICommunicator). loopback runs every rank as a thread of a single
+ * JVM, exchanging messages through queues (see LoopbackCommunicator), so the
+ * distributed modes can be run and profiled without an MPI installation.
+ * socket runs one JVM per rank, connected by TCP (see SocketCommunicator),
+ * for nodes without MPI.
+ */
+public enum Transport {
+	mpi, loopback, socket
+}
@@ -0,0 +1,72 @@
+/**
+ * TreeReduction:
+ * Adds up an array over all the processes along a binomial tree rooted at
+ * Process-0, with point to point messages. In step s (s = 1, 2, 4, ...)
+ * every process whose rank has bit s set sends its partial sum to
+ * rank - s and is done; the others receive from rank + s, if there is such
+ * a process, and add it to their own. After ceil(log2(p)) steps Process-0
+ * holds the sum over all the processes, and no process has received more
+ * than log2(p) messages.
+ */
+import java.io.IOException;
+
+
+public class TreeReduction {
+
+        /**
+         * reduce:
+         * add up values over all the processes, the sum ends up in values of Process-0
+         * @param communicator: the processes taking part
+         * @param values: this process's part, on Process-0 replaced by the sum
+         * @param count: number of entries of values to add up
+         * @param received: scratch buffer of at least count entries
+         * @param tag: MPI message tag of the partial sums
+         * @throws IOException
+         */
+	public static void reduce(Communicator communicator, double[] values, int count, double[] received, int tag) throws IOException {
+		int rank = communicator.getRank();
+		int size = communicator.getSize();
+
+		for(int step = 1; step < size; step <<= 1) {
+			if((rank & step) != 0) {
+				communicator.send(values, 0, count, rank - step, tag);
+				return;
+			}
+			if(rank + step < size) {
+				communicator.recv(received, 0, count, rank + step, tag);
+				for(int i = 0; i < count; i++) {
+					values[i] += received[i];
+				}
+			}
+		}
+	}
+
+        /**
+         * reduce:
+         * add up values over all the processes, the sum ends up in values of Process-0
+         * @param communicator: the processes taking part
+         * @param values: this process's part, on Process-0 replaced by the sum
+         * @param count: number of entries of values to add up
+         * @param received: scratch buffer of at least count entries
+         * @param tag: MPI message tag of the partial sums
+         * @throws IOException
+         */
+	public static void reduce(Communicator communicator, int[] values, int count, int[] received, int tag) throws IOException {
+		int rank = communicator.getRank();
+		int size = communicator.getSize();
+
+		for(int step = 1; step < size; step <<= 1) {
+			if((rank & step) != 0) {
+				communicator.send(values, 0, count, rank - step, tag);
+				return;
+			}
+			if(rank + step < size) {
+				communicator.recv(received, 0, count, rank + step, tag);
+				for(int i = 0; i < count; i++) {
+					values[i] += received[i];
+				}
+			}
+		}
+	}
+
+}
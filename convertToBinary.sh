@@ -0,0 +1,10 @@
+cd clusteringsrc
+javac DataType.java DNABase.java DNAStrand.java Point.java PointSet.java InputPartitionReader.java BinaryDataset.java DatasetConverter.java
+cd ..
+
+		echo ********CONVERTING 2D POINTS TO 2D_DataGenerator/cluster.bin
+		java -cp clusteringsrc DatasetConverter point 2D_DataGenerator/cluster.csv 2D_DataGenerator/cluster.bin
+
+		echo ********CONVERTING DNA STRANDS TO DNA_DataGenerator/cluster.bin
+		java -cp clusteringsrc DatasetConverter dna DNA_DataGenerator/cluster.csv DNA_DataGenerator/cluster.bin
+
@@ -0,0 +1,29 @@
+#Starts one clustering process per line of the host list, connected by TCP instead of MPI
+#Usage: ./launchSocketClustering.sh k mode DataType [inputFile] [--option=value ...]
+#The same host may be listed several times to run several ranks on it.
+#localhost lines run here, the other hosts through ssh in the same directory.
+
+#Host list, one host or host:port per line
+hosts=${HOSTS:-machines.txt}
+
+#Quotes $1 for the remote shell of ssh
+quote() {
+	printf "'%s'" "$(printf '%s' "$1" | sed "s/'/'\\\\''/g")"
+}
+
+remoteArgs=""
+for arg in "$@"; do
+	remoteArgs="$remoteArgs $(quote "$arg")"
+done
+
+rank=0
+for line in $(grep -v '^#' "$hosts"); do
+	host=${line%:*}
+	if [ "$host" = "localhost" ] || [ "$host" = "127.0.0.1" ]; then
+		java -cp clusteringsrc Driver "$@" --transport=socket --hosts="$hosts" --rank=$rank &
+	else
+		ssh -n "$host" "cd $(quote "$PWD") && java -cp clusteringsrc Driver$remoteArgs --transport=socket --hosts=$(quote "$hosts") --rank=$rank" &
+	fi
+	rank=$((rank+1))
+done
+wait